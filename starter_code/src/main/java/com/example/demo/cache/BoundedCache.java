@@ -0,0 +1,269 @@
+package com.example.demo.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Size-bounded, TTL-expiring in-process cache. Keys are spread over a fixed
+ * number of segments, each an access-ordered {@link LinkedHashMap} guarded by
+ * its own monitor, so eviction is LRU per segment and readers of different
+ * segments never contend. Hit, miss, put and eviction counts are kept in
+ * {@link LongAdder}s and published through {@link BoundedCacheMetrics}.
+ */
+public class BoundedCache<K, V> {
+    private static final int SEGMENTS = 16;
+
+    private final String name;
+    private final long ttlNanos;
+    private final LongSupplier ticker;
+    private final Segment<K, V>[] segments;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public BoundedCache(String name, int maximumSize, long ttlMillis) {
+        this(name, maximumSize, ttlMillis, System::nanoTime);
+    }
+
+    @SuppressWarnings("unchecked")
+    public BoundedCache(String name, int maximumSize, long ttlMillis, LongSupplier ticker) {
+        this.name = name;
+        this.ttlNanos = ttlMillis <= 0 ? Long.MAX_VALUE : TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.ticker = ticker;
+        int segmentCount = maximumSize < SEGMENTS * 4 ? 1 : SEGMENTS;
+        int perSegment = Math.max(1, (maximumSize + segmentCount - 1) / segmentCount);
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment<>(perSegment, evictions);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public V get(K key) {
+        Segment<K, V> segment = segmentFor(key);
+        long now = ticker.getAsLong();
+        synchronized (segment) {
+            return liveValue(segment, key, now);
+        }
+    }
+
+    /**
+     * Returns the cached value or loads, caches and returns it. The loader runs
+     * outside the segment lock; a {@code null} result is not cached, and
+     * neither is a result whose segment saw an invalidation while it loaded,
+     * since that value may predate the change that caused it.
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        Segment<K, V> segment = segmentFor(key);
+        long invalidations;
+        synchronized (segment) {
+            V value = liveValue(segment, key, ticker.getAsLong());
+            if (value != null) {
+                return value;
+            }
+            invalidations = segment.invalidations;
+        }
+        V value = loader.apply(key);
+        if (value == null) {
+            return null;
+        }
+        Entry<V> entry = new Entry<>(value, ticker.getAsLong());
+        synchronized (segment) {
+            if (segment.invalidations != invalidations) {
+                return value;
+            }
+            segment.put(key, entry);
+        }
+        puts.increment();
+        return value;
+    }
+
+    /**
+     * Returns the cached values of {@code keys}, in key order, loading all the
+     * missing ones with one call to {@code loader}. As with
+     * {@link #get(Object, Function)}, a loaded value is cached only if its
+     * segment saw no invalidation while the batch loaded; keys the loader
+     * returns no value for are left out.
+     */
+    public Map<K, V> getAll(Collection<? extends K> keys, Function<? super List<K>, ? extends Map<K, V>> loader) {
+        Map<K, V> values = new LinkedHashMap<>();
+        List<K> missing = new ArrayList<>();
+        long[] invalidations = new long[keys.size()];
+        long now = ticker.getAsLong();
+        for (K key : keys) {
+            if (values.containsKey(key)) {
+                continue;
+            }
+            Segment<K, V> segment = segmentFor(key);
+            synchronized (segment) {
+                V value = liveValue(segment, key, now);
+                values.put(key, value);
+                if (value == null) {
+                    invalidations[missing.size()] = segment.invalidations;
+                    missing.add(key);
+                }
+            }
+        }
+        if (missing.isEmpty()) {
+            return values;
+        }
+        Map<K, V> loaded = loader.apply(missing);
+        long loadedAt = ticker.getAsLong();
+        for (int i = 0; i < missing.size(); i++) {
+            K key = missing.get(i);
+            V value = loaded.get(key);
+            if (value == null) {
+                values.remove(key);
+                continue;
+            }
+            values.put(key, value);
+            Segment<K, V> segment = segmentFor(key);
+            synchronized (segment) {
+                if (segment.invalidations != invalidations[i]) {
+                    continue;
+                }
+                segment.put(key, new Entry<>(value, loadedAt));
+            }
+            puts.increment();
+        }
+        return values;
+    }
+
+    public void put(K key, V value) {
+        Segment<K, V> segment = segmentFor(key);
+        Entry<V> entry = new Entry<>(value, ticker.getAsLong());
+        synchronized (segment) {
+            segment.put(key, entry);
+        }
+        puts.increment();
+    }
+
+    /**
+     * Caches the value unless a live entry exists, and returns that entry's
+     * value or {@code null} if the value was cached.
+     */
+    public V putIfAbsent(K key, V value) {
+        Segment<K, V> segment = segmentFor(key);
+        long now = ticker.getAsLong();
+        synchronized (segment) {
+            Entry<V> entry = segment.get(key);
+            if (entry != null && now - entry.writtenAt < ttlNanos) {
+                hits.increment();
+                return entry.value;
+            }
+            if (entry != null) {
+                evictions.increment();
+            }
+            segment.put(key, new Entry<>(value, now));
+        }
+        misses.increment();
+        puts.increment();
+        return null;
+    }
+
+    public void invalidate(K key) {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            segment.remove(key);
+            segment.invalidations++;
+        }
+    }
+
+    public void invalidateAll() {
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+                segment.invalidations++;
+            }
+        }
+    }
+
+    public long size() {
+        long size = 0;
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long putCount() {
+        return puts.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    private V liveValue(Segment<K, V> segment, K key, long now) {
+        Entry<V> entry = segment.get(key);
+        if (entry != null && now - entry.writtenAt < ttlNanos) {
+            hits.increment();
+            return entry.value;
+        }
+        if (entry != null) {
+            segment.remove(key);
+            evictions.increment();
+        }
+        misses.increment();
+        return null;
+    }
+
+    private Segment<K, V> segmentFor(Object key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & (segments.length - 1)];
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long writtenAt;
+
+        private Entry(V value, long writtenAt) {
+            this.value = value;
+            this.writtenAt = writtenAt;
+        }
+    }
+
+    private static final class Segment<K, V> extends LinkedHashMap<K, Entry<V>> {
+        private final int capacity;
+        private final LongAdder evictions;
+        private long invalidations;
+
+        private Segment(int capacity, LongAdder evictions) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+            this.evictions = evictions;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+}
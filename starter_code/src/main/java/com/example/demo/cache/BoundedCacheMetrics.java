@@ -0,0 +1,51 @@
+package com.example.demo.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.binder.cache.CacheMeterBinder;
+
+import java.util.Collections;
+
+public class BoundedCacheMetrics extends CacheMeterBinder {
+
+    private final BoundedCache<?, ?> cache;
+
+    public BoundedCacheMetrics(BoundedCache<?, ?> cache) {
+        super(cache, cache.getName(), Collections.<Tag>emptyList());
+        this.cache = cache;
+    }
+
+    public static <C extends BoundedCache<?, ?>> C monitor(MeterRegistry registry, C cache) {
+        new BoundedCacheMetrics(cache).bindTo(registry);
+        return cache;
+    }
+
+    @Override
+    protected Long size() {
+        return cache.size();
+    }
+
+    @Override
+    protected long hitCount() {
+        return cache.hitCount();
+    }
+
+    @Override
+    protected Long missCount() {
+        return cache.missCount();
+    }
+
+    @Override
+    protected Long evictionCount() {
+        return cache.evictionCount();
+    }
+
+    @Override
+    protected long putCount() {
+        return cache.putCount();
+    }
+
+    @Override
+    protected void bindImplementationSpecificMetrics(MeterRegistry registry) {
+    }
+}
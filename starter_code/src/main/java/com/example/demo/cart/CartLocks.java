@@ -0,0 +1,33 @@
+package com.example.demo.cart;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed array of locks striped by username. Requests for the same cart always
+ * map to the same lock, requests for different users rarely share one.
+ */
+@Component
+public class CartLocks {
+
+    private final Lock[] stripes;
+    private final int mask;
+
+    public CartLocks(@Value("${cart.lock-stripes:64}") int stripeCount) {
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1) << 1);
+        this.stripes = new Lock[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public Lock forUser(String username) {
+        int h = username.hashCode();
+        h ^= (h >>> 16);
+        return stripes[h & mask];
+    }
+}
@@ -0,0 +1,272 @@
+package com.example.demo.cart;
+
+import com.example.demo.model.persistence.Cart;
+import com.example.demo.model.persistence.User;
+import com.example.demo.model.persistence.repositories.CartRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+
+/**
+ * Owns the cart mutation path. Mutations for one username are serialized by
+ * {@link CartLocks}. In the default mode every mutation is saved synchronously
+ * and replayed on a fresh copy of the cart when another writer bumped its
+ * version. With {@code cart.write-behind.enabled=true} active carts live in
+ * memory keyed by username, mutations only mark them dirty, and dirty carts are
+ * written to the {@link CartRepository} in batches on a fixed interval, when the
+ * dirty count reaches the batch size, on {@link #flush(String)} and on shutdown.
+ * A flush pass writes only the carts that were dirty when it started; a cart
+ * whose write fails stays dirty until the next pass.
+ */
+@Component
+public class CartStore {
+    private static final Logger logger = LoggerFactory.getLogger(CartStore.class);
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private CartLocks cartLocks;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${cart.write-behind.enabled:false}")
+    private boolean writeBehind;
+
+    @Value("${cart.write-behind.batch-size:100}")
+    private int batchSize;
+
+    @Value("${cart.write-behind.idle-ms:600000}")
+    private long idleMillis;
+
+    @Value("${cart.optimistic-retries:3}")
+    private int optimisticRetries;
+
+    private final Map<String, Entry> carts = new ConcurrentHashMap<>();
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    private final Object flushLock = new Object();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final ExecutorService flushExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cart-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public boolean isWriteBehind() {
+        return writeBehind;
+    }
+
+    public Cart load(User user) {
+        if (!writeBehind) {
+            return user.getCart();
+        }
+        Lock lock = cartLocks.forUser(user.getUsername());
+        lock.lock();
+        try {
+            return entry(user).cart.copy();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Cart update(User user, Consumer<Cart> mutation) {
+        Lock lock = cartLocks.forUser(user.getUsername());
+        lock.lock();
+        try {
+            return writeBehind ? updateInMemory(user, mutation) : updateAndSave(user, mutation);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void flush(String username) {
+        if (!writeBehind) {
+            return;
+        }
+        synchronized (flushLock) {
+            List<String> usernames = new ArrayList<>(1);
+            List<Cart> snapshots = new ArrayList<>(1);
+            snapshot(username, usernames, snapshots);
+            write(usernames, snapshots, dirty);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${cart.write-behind.flush-interval-ms:1000}")
+    public void flushDirty() {
+        flushRequested.set(false);
+        if (!writeBehind) {
+            return;
+        }
+        synchronized (flushLock) {
+            List<String> pending = new ArrayList<>(dirty);
+            Set<String> failed = new HashSet<>();
+            for (int from = 0; from < pending.size(); from += batchSize) {
+                List<String> usernames = new ArrayList<>(batchSize);
+                List<Cart> snapshots = new ArrayList<>(batchSize);
+                for (String username : pending.subList(from, Math.min(from + batchSize, pending.size()))) {
+                    snapshot(username, usernames, snapshots);
+                }
+                write(usernames, snapshots, failed);
+            }
+            dirty.addAll(failed);
+            evictIdle();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushExecutor.shutdown();
+        try {
+            flushExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushDirty();
+    }
+
+    private Cart updateAndSave(User user, Consumer<Cart> mutation) {
+        for (int attempt = 0; ; attempt++) {
+            boolean reload = attempt > 0;
+            try {
+                return transactionTemplate.execute(status -> {
+                    Cart cart = reload
+                            ? cartRepository.findById(user.getCart().getId()).orElseThrow(IllegalStateException::new)
+                            : user.getCart();
+                    mutation.accept(cart);
+                    return cartRepository.saveAndFlush(cart);
+                });
+            } catch (ObjectOptimisticLockingFailureException e) {
+                if (attempt >= optimisticRetries) {
+                    throw e;
+                }
+                logger.warn("Concurrent update on cart of user {}, retrying", user.getUsername());
+            }
+        }
+    }
+
+    private Cart updateInMemory(User user, Consumer<Cart> mutation) {
+        Entry entry = entry(user);
+        mutation.accept(entry.cart);
+        entry.lastAccess = System.currentTimeMillis();
+        dirty.add(user.getUsername());
+        if (dirty.size() >= batchSize && flushRequested.compareAndSet(false, true)) {
+            flushExecutor.execute(this::flushDirty);
+        }
+        return entry.cart.copy();
+    }
+
+    private Entry entry(User user) {
+        return carts.computeIfAbsent(user.getUsername(), username -> new Entry(user.getCart().copy()));
+    }
+
+    private void snapshot(String username, List<String> usernames, List<Cart> snapshots) {
+        Lock lock = cartLocks.forUser(username);
+        lock.lock();
+        try {
+            Entry entry = carts.get(username);
+            if (dirty.remove(username) && entry != null) {
+                Cart snapshot = entry.cart.copy();
+                snapshot.setUser(null);
+                usernames.add(username);
+                snapshots.add(snapshot);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void write(List<String> usernames, List<Cart> snapshots, Set<String> failed) {
+        if (snapshots.isEmpty()) {
+            return;
+        }
+        try {
+            List<Cart> saved = cartRepository.saveAll(snapshots);
+            for (int i = 0; i < saved.size(); i++) {
+                written(usernames.get(i), saved.get(i));
+            }
+            logger.debug("Flushed {} carts", saved.size());
+        } catch (RuntimeException e) {
+            if (snapshots.size() == 1) {
+                failed(usernames.get(0), e, failed);
+                return;
+            }
+            for (int i = 0; i < snapshots.size(); i++) {
+                try {
+                    written(usernames.get(i), cartRepository.save(snapshots.get(i)));
+                } catch (RuntimeException single) {
+                    failed(usernames.get(i), single, failed);
+                }
+            }
+        }
+    }
+
+    private void written(String username, Cart saved) {
+        Lock lock = cartLocks.forUser(username);
+        lock.lock();
+        try {
+            Entry entry = carts.get(username);
+            if (entry != null) {
+                entry.cart.setVersion(saved.getVersion());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void failed(String username, RuntimeException e, Set<String> failed) {
+        if (e instanceof ObjectOptimisticLockingFailureException) {
+            logger.error("Cart of user {} was changed by another writer, dropping in-memory copy", username);
+            carts.remove(username);
+        } else {
+            logger.error("Cannot flush cart of user {}, will retry on next flush", username, e);
+            failed.add(username);
+        }
+    }
+
+    private void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleMillis;
+        carts.forEach((username, entry) -> {
+            if (entry.lastAccess >= cutoff) {
+                return;
+            }
+            Lock lock = cartLocks.forUser(username);
+            lock.lock();
+            try {
+                if (entry.lastAccess < cutoff && !dirty.contains(username)) {
+                    carts.remove(username, entry);
+                }
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    private static final class Entry {
+        private final Cart cart;
+        private volatile long lastAccess = System.currentTimeMillis();
+
+        private Entry(Cart cart) {
+            this.cart = cart;
+        }
+    }
+}
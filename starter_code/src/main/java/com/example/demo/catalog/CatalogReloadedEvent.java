@@ -0,0 +1,18 @@
+package com.example.demo.catalog;
+
+/**
+ * Published after items were written outside JPA, e.g. by a bulk import, so
+ * no {@link ItemChangedEvent} was raised for them.
+ */
+public class CatalogReloadedEvent {
+
+    private final long itemsWritten;
+
+    public CatalogReloadedEvent(long itemsWritten) {
+        this.itemsWritten = itemsWritten;
+    }
+
+    public long getItemsWritten() {
+        return itemsWritten;
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.demo.catalog;
+
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.repositories.ItemRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.DigestUtils;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps every item as pre-encoded JSON bytes, plus the full item list
+ * assembled from them, so catalog reads are served as a byte copy instead of
+ * a query and a serialization. Item changes re-encode only that item; the
+ * list is re-assembled by concatenating item bytes on the next read, by one
+ * reader at a time while the others are served the previous list. A rebuild
+ * encodes the catalog into a new map without holding the write lock, then
+ * replays the item changes that arrived meanwhile and swaps it in. Each
+ * encoding carries a strong ETag derived from its content.
+ */
+@Component
+public class CatalogSnapshot {
+    private static final Logger logger = LoggerFactory.getLogger(CatalogSnapshot.class);
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${catalog.snapshot.gzip-min-bytes:1024}")
+    private int gzipMinBytes;
+
+    private final ObjectWriter itemWriter;
+    private final Object writeLock = new Object();
+    private final Object rebuildLock = new Object();
+    private final ReentrantLock assembleLock = new ReentrantLock();
+    private final AtomicLong modifications = new AtomicLong();
+    private volatile ConcurrentNavigableMap<Long, Encoded> items;
+    private volatile Encoded list;
+    private volatile Encoded previousList;
+    private List<ItemChangedEvent> changedDuringRebuild;
+
+    public CatalogSnapshot(ObjectMapper objectMapper) {
+        this.itemWriter = objectMapper.writerFor(Item.class);
+    }
+
+    /**
+     * An immutable encoding with its strong ETag. {@code gzip} is null when the
+     * body is too small to be worth compressing.
+     */
+    public static final class Encoded {
+        private final byte[] json;
+        private final String etag;
+        private final byte[] gzip;
+        private final String gzipEtag;
+
+        private Encoded(byte[] json, byte[] gzip) {
+            String digest = DigestUtils.md5DigestAsHex(json);
+            this.json = json;
+            this.etag = "\"" + digest + "\"";
+            this.gzip = gzip;
+            this.gzipEtag = gzip == null ? null : "\"" + digest + "-gzip\"";
+        }
+
+        public byte[] getJson() {
+            return json;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public byte[] getGzip() {
+            return gzip;
+        }
+
+        public String getGzipEtag() {
+            return gzipEtag;
+        }
+    }
+
+    public Encoded item(long id) {
+        ConcurrentNavigableMap<Long, Encoded> current = items;
+        return current == null ? null : current.get(id);
+    }
+
+    public Encoded list() {
+        Encoded encoded = list;
+        if (encoded != null) {
+            return encoded;
+        }
+        if (items == null) {
+            return null;
+        }
+        if (!assembleLock.tryLock()) {
+            encoded = previousList;
+            if (encoded != null) {
+                return encoded;
+            }
+            assembleLock.lock();
+        }
+        try {
+            encoded = list;
+            if (encoded != null) {
+                return encoded;
+            }
+            ConcurrentNavigableMap<Long, Encoded> current = items;
+            long seen = modifications.get();
+            encoded = assemble(current);
+            synchronized (writeLock) {
+                if (modifications.get() == seen && items == current) {
+                    list = encoded;
+                }
+            }
+            previousList = encoded;
+            return encoded;
+        } finally {
+            assembleLock.unlock();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        synchronized (rebuildLock) {
+            synchronized (writeLock) {
+                changedDuringRebuild = new ArrayList<>();
+            }
+            ConcurrentNavigableMap<Long, Encoded> encoded = null;
+            try {
+                encoded = load();
+            } finally {
+                synchronized (writeLock) {
+                    if (encoded != null) {
+                        for (ItemChangedEvent event : changedDuringRebuild) {
+                            apply(encoded, event);
+                        }
+                        items = encoded;
+                        list = null;
+                        modifications.incrementAndGet();
+                    }
+                    changedDuringRebuild = null;
+                }
+            }
+            logger.info("Encoded {} items for the catalog snapshot", encoded.size());
+        }
+    }
+
+    @EventListener
+    public void onCatalogReloaded(CatalogReloadedEvent event) {
+        rebuild();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onItemChanged(ItemChangedEvent event) {
+        synchronized (writeLock) {
+            if (changedDuringRebuild != null) {
+                changedDuringRebuild.add(event);
+            }
+            ConcurrentNavigableMap<Long, Encoded> current = items;
+            if (current == null) {
+                return;
+            }
+            apply(current, event);
+            list = null;
+            modifications.incrementAndGet();
+        }
+    }
+
+    private ConcurrentNavigableMap<Long, Encoded> load() {
+        ConcurrentNavigableMap<Long, Encoded> encoded = new ConcurrentSkipListMap<>();
+        transactionTemplate.execute(status -> {
+            int count = 0;
+            try (Stream<Item> stream = itemRepository.streamAll()) {
+                for (Iterator<Item> iterator = stream.iterator(); iterator.hasNext(); ) {
+                    Item item = iterator.next();
+                    encoded.put(item.getId(), new Encoded(encode(item), null));
+                    if (++count % 1000 == 0) {
+                        entityManager.clear();
+                    }
+                }
+            }
+            return count;
+        });
+        return encoded;
+    }
+
+    private void apply(ConcurrentNavigableMap<Long, Encoded> encoded, ItemChangedEvent event) {
+        Long id = event.getItem().getId();
+        if (event.getType() == ItemChangedEvent.Type.SAVED) {
+            encoded.put(id, new Encoded(encode(event.getItem()), null));
+        } else {
+            encoded.remove(id);
+        }
+    }
+
+    private byte[] encode(Item item) {
+        try {
+            return itemWriter.writeValueAsBytes(item);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Encoded assemble(ConcurrentNavigableMap<Long, Encoded> current) {
+        int length = 2;
+        for (Encoded item : current.values()) {
+            length += item.json.length + 1;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(length);
+        out.write('[');
+        boolean first = true;
+        for (Encoded item : current.values()) {
+            if (!first) {
+                out.write(',');
+            }
+            out.write(item.json, 0, item.json.length);
+            first = false;
+        }
+        out.write(']');
+        byte[] json = out.toByteArray();
+        return new Encoded(json, json.length >= gzipMinBytes ? gzip(json) : null);
+    }
+
+    private static byte[] gzip(byte[] json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out, 8192)) {
+            gzip.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.demo.catalog;
+
+import com.example.demo.cache.BoundedCache;
+import com.example.demo.cache.BoundedCacheMetrics;
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.repositories.ItemRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Read-through cache in front of {@link ItemRepository#findById} and
+ * {@link ItemRepository#findByName}. Entries are dropped after a committed
+ * write to the item, so steady-state catalog reads cost no SQL.
+ */
+@Component
+public class ItemCache {
+
+    private final ItemRepository itemRepository;
+    private final BoundedCache<Long, Item> byId;
+    private final BoundedCache<String, List<Item>> byName;
+
+    public ItemCache(ItemRepository itemRepository,
+                     MeterRegistry meterRegistry,
+                     @Value("${item.cache.maximum-size:10000}") int maximumSize,
+                     @Value("${item.cache.ttl-ms:600000}") long ttlMillis) {
+        this.itemRepository = itemRepository;
+        this.byId = BoundedCacheMetrics.monitor(meterRegistry,
+                new BoundedCache<>("items.byId", maximumSize, ttlMillis));
+        this.byName = BoundedCacheMetrics.monitor(meterRegistry,
+                new BoundedCache<>("items.byName", maximumSize, ttlMillis));
+    }
+
+    public Optional<Item> findById(Long id) {
+        return Optional.ofNullable(byId.get(id, key -> itemRepository.findById(key).orElse(null)));
+    }
+
+    public List<Item> findByName(String name) {
+        return byName.get(name, key -> Collections.unmodifiableList(new ArrayList<>(itemRepository.findByName(key))));
+    }
+
+    public List<Item> findAllById(Collection<Long> ids) {
+        return new ArrayList<>(byId.getAll(ids, missing -> {
+            Map<Long, Item> loaded = new HashMap<>();
+            for (Item item : itemRepository.findAllById(missing)) {
+                loaded.put(item.getId(), item);
+            }
+            return loaded;
+        }).values());
+    }
+
+    public void invalidateAll() {
+        byId.invalidateAll();
+        byName.invalidateAll();
+    }
+
+    @EventListener
+    public void onCatalogReloaded(CatalogReloadedEvent event) {
+        invalidateAll();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onItemChanged(ItemChangedEvent event) {
+        byId.invalidate(event.getItem().getId());
+        byName.invalidateAll();
+    }
+}
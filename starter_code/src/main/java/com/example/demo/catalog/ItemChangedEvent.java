@@ -0,0 +1,26 @@
+package com.example.demo.catalog;
+
+import com.example.demo.model.persistence.Item;
+
+public class ItemChangedEvent {
+
+    public enum Type {
+        SAVED, REMOVED
+    }
+
+    private final Item item;
+    private final Type type;
+
+    public ItemChangedEvent(Item item, Type type) {
+        this.item = item;
+        this.type = type;
+    }
+
+    public Item getItem() {
+        return item;
+    }
+
+    public Type getType() {
+        return type;
+    }
+}
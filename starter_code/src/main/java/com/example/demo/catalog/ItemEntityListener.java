@@ -0,0 +1,32 @@
+package com.example.demo.catalog;
+
+import com.example.demo.model.persistence.Item;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * JPA callback on {@link Item} that republishes every write as an
+ * {@link ItemChangedEvent}, so in-memory catalog structures can follow the table.
+ */
+@Component
+public class ItemEntityListener {
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @PostPersist
+    @PostUpdate
+    public void saved(Item item) {
+        eventPublisher.publishEvent(new ItemChangedEvent(item, ItemChangedEvent.Type.SAVED));
+    }
+
+    @PostRemove
+    public void removed(Item item) {
+        eventPublisher.publishEvent(new ItemChangedEvent(item, ItemChangedEvent.Type.REMOVED));
+    }
+}
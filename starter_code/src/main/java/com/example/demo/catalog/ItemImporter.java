@@ -0,0 +1,306 @@
+package com.example.demo.catalog;
+
+import com.example.demo.model.money.Money;
+import com.example.demo.model.responses.ImportReport;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams CSV ({@code name,price,description} with a header row) or NDJSON
+ * item feeds into the item table. Rows are read one line at a time, validated,
+ * buffered up to {@code item.import.chunk-size} and written with JDBC batch
+ * inserts of {@code item.import.batch-size}, one transaction per chunk, so
+ * memory stays bounded by the chunk size whatever the feed length. Quoted CSV
+ * fields may contain commas and doubled quotes but not line breaks. Rows are
+ * parsed straight into the insert parameters, slicing unquoted CSV fields out
+ * of the line, since parsing rather than the inserts bounds the import rate.
+ */
+@Component
+public class ItemImporter {
+    private static final Logger logger = LoggerFactory.getLogger(ItemImporter.class);
+
+    private static final String INSERT_SQL = "insert into item (name, price, description) values (?, ?, ?)";
+    private static final int MAX_TEXT_LENGTH = 255;
+    private static final int MAX_REPORTED_ERRORS = 20;
+    private static final String[] CSV_HEADER = {"name", "price", "description"};
+
+    public enum Format {
+        CSV, NDJSON
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final JsonFactory jsonFactory;
+    private final Counter importedRows;
+    private final Counter rejectedRows;
+    private final int batchSize;
+    private final int chunkSize;
+
+    public ItemImporter(JdbcTemplate jdbcTemplate,
+                        TransactionTemplate transactionTemplate,
+                        ApplicationEventPublisher eventPublisher,
+                        ObjectMapper objectMapper,
+                        MeterRegistry meterRegistry,
+                        @Value("${item.import.batch-size:1000}") int batchSize,
+                        @Value("${item.import.chunk-size:10000}") int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.jsonFactory = objectMapper.getFactory();
+        this.importedRows = meterRegistry.counter("catalog.import.rows", "result", "imported");
+        this.rejectedRows = meterRegistry.counter("catalog.import.rows", "result", "rejected");
+        this.batchSize = batchSize;
+        this.chunkSize = chunkSize;
+    }
+
+    public ImportReport importItems(InputStream in, Format format) throws IOException {
+        ImportReport report = new ImportReport();
+        long started = System.nanoTime();
+        List<Object[]> chunk = new ArrayList<>(Math.min(chunkSize, 100_000));
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            long lineNumber = 0;
+            if (format == Format.CSV) {
+                line = reader.readLine();
+                lineNumber++;
+                if (line == null) {
+                    return report;
+                }
+                if (!isCsvHeader(line)) {
+                    reject(report, lineNumber, "expected header name,price,description");
+                    return report;
+                }
+            }
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                report.setRowsRead(report.getRowsRead() + 1);
+                Object[] row;
+                try {
+                    row = validate(format == Format.CSV ? parseCsv(line) : parseJson(line));
+                } catch (IllegalArgumentException e) {
+                    reject(report, lineNumber, e.getMessage());
+                    continue;
+                }
+                chunk.add(row);
+                if (chunk.size() >= chunkSize) {
+                    write(chunk, report, started);
+                }
+            }
+            write(chunk, report, started);
+            report.setCompleted(true);
+        } catch (DataAccessException e) {
+            logger.error("Item import aborted after {} rows", report.getRowsImported(), e);
+            report.getErrors().add("import aborted: " + e.getMostSpecificCause().getMessage());
+        } finally {
+            finish(report, started);
+            if (report.getRowsImported() > 0) {
+                eventPublisher.publishEvent(new CatalogReloadedEvent(report.getRowsImported()));
+            }
+        }
+        return report;
+    }
+
+    private void write(List<Object[]> chunk, ImportReport report, long started) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(INSERT_SQL, chunk, batchSize, (ps, row) -> {
+            ps.setString(1, (String) row[0]);
+            ps.setBigDecimal(2, (BigDecimal) row[1]);
+            ps.setString(3, (String) row[2]);
+        }));
+        report.setRowsImported(report.getRowsImported() + chunk.size());
+        importedRows.increment(chunk.size());
+        chunk.clear();
+        logger.info("Imported {} items so far ({} rows/s)", report.getRowsImported(), rate(report, started));
+    }
+
+    private void reject(ImportReport report, long lineNumber, String message) {
+        report.setRowsRejected(report.getRowsRejected() + 1);
+        rejectedRows.increment();
+        if (report.getErrors().size() < MAX_REPORTED_ERRORS) {
+            report.getErrors().add("line " + lineNumber + ": " + message);
+        }
+    }
+
+    private ImportReport finish(ImportReport report, long started) {
+        report.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        report.setRowsPerSecond(rate(report, started));
+        logger.info("Item import finished: {} imported, {} rejected in {} ms",
+                report.getRowsImported(), report.getRowsRejected(), report.getElapsedMillis());
+        return report;
+    }
+
+    private static long rate(ImportReport report, long started) {
+        long elapsed = Math.max(1, System.nanoTime() - started);
+        return report.getRowsImported() * TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+
+    /**
+     * Checks the fields of a parsed row, given as name, price and description,
+     * and turns them in place into the insert parameters.
+     */
+    private static Object[] validate(Object[] row) {
+        String name = (String) row[0];
+        String price = (String) row[1];
+        String description = (String) row[2];
+        if (name == null || name.trim().isEmpty()) {
+            throw new IllegalArgumentException("name is required");
+        }
+        if (description == null) {
+            throw new IllegalArgumentException("description is required");
+        }
+        if (name.length() > MAX_TEXT_LENGTH || description.length() > MAX_TEXT_LENGTH) {
+            throw new IllegalArgumentException("name and description must be at most " + MAX_TEXT_LENGTH + " characters");
+        }
+        if (price == null) {
+            throw new IllegalArgumentException("price is required");
+        }
+        Money amount;
+        try {
+            amount = Money.parse(price);
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw new IllegalArgumentException("price is not a decimal amount: " + price);
+        }
+        if (amount.getMinorUnits() < 0) {
+            throw new IllegalArgumentException("price must not be negative");
+        }
+        row[0] = name.trim();
+        row[1] = amount.toBigDecimal();
+        return row;
+    }
+
+    private static boolean isCsvHeader(String line) {
+        Object[] header;
+        try {
+            header = parseCsv(line);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        for (int i = 0; i < CSV_HEADER.length; i++) {
+            if (!CSV_HEADER[i].equals(((String) header[i]).trim().toLowerCase(Locale.ROOT))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Object[] parseJson(String line) {
+        Object[] row = new Object[3];
+        try (JsonParser parser = jsonFactory.createParser(line)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("expected a JSON object");
+            }
+            String field;
+            while ((field = parser.nextFieldName()) != null) {
+                JsonToken value = parser.nextToken();
+                String text = value == JsonToken.VALUE_NULL ? null : value.isScalarValue() ? parser.getText() : null;
+                if (text == null && value != JsonToken.VALUE_NULL) {
+                    parser.skipChildren();
+                }
+                switch (field) {
+                    case "name":
+                        row[0] = text;
+                        break;
+                    case "price":
+                        row[1] = text;
+                        break;
+                    case "description":
+                        row[2] = text;
+                        break;
+                    default:
+                        break;
+                }
+            }
+            if (parser.currentToken() != JsonToken.END_OBJECT || parser.nextToken() != null) {
+                throw new IllegalArgumentException("malformed JSON row");
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("malformed JSON row");
+        }
+        return row;
+    }
+
+    /**
+     * Splits a CSV line into its name, price and description. Unquoted fields
+     * are sliced out of the line; only quoted ones are copied character by
+     * character to undo doubled quotes.
+     */
+    static Object[] parseCsv(String line) {
+        Object[] row = new Object[3];
+        int fields = 0;
+        int length = line.length();
+        int start = 0;
+        while (true) {
+            String field;
+            int end;
+            if (start < length && line.charAt(start) == '"') {
+                StringBuilder quoted = new StringBuilder(length - start);
+                int from = start + 1;
+                while (true) {
+                    int quote = line.indexOf('"', from);
+                    if (quote < 0) {
+                        throw new IllegalArgumentException("unterminated quoted field");
+                    }
+                    quoted.append(line, from, quote);
+                    if (quote + 1 < length && line.charAt(quote + 1) == '"') {
+                        quoted.append('"');
+                        from = quote + 2;
+                    } else {
+                        from = quote + 1;
+                        break;
+                    }
+                }
+                end = comma(line, from);
+                field = quoted.append(line, from, end).toString();
+            } else {
+                end = comma(line, start);
+                field = line.substring(start, end);
+            }
+            if (fields < row.length) {
+                row[fields] = field;
+            }
+            fields++;
+            if (end == length) {
+                break;
+            }
+            start = end + 1;
+        }
+        if (fields != row.length) {
+            throw new IllegalArgumentException("expected 3 fields but found " + fields);
+        }
+        return row;
+    }
+
+    private static int comma(String line, int from) {
+        int comma = line.indexOf(',', from);
+        return comma < 0 ? line.length() : comma;
+    }
+}
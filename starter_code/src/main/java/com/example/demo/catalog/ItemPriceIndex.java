@@ -0,0 +1,420 @@
+package com.example.demo.catalog;
+
+import com.example.demo.model.money.Money;
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.repositories.ItemRepository;
+import com.example.demo.util.LongIntHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Column-oriented index of item prices and names. One set of parallel arrays
+ * is sorted by price and another by name (both ties broken by id), so a price
+ * range is two binary searches and a top-N is a slice. Item changes do not
+ * touch the columns: they go to a small overlay of pending entries, kept
+ * sorted both ways and merged into query results, which shadows the items'
+ * column entries. Once {@value #MAX_PENDING} items are pending the overlay
+ * is merged into new columns in one pass. Columns and overlay are immutable
+ * and published together with one volatile write, so readers never lock. A
+ * rebuild loads the new columns without holding the write lock, then
+ * replays the changes that arrived meanwhile and swaps them in.
+ */
+@Component
+public class ItemPriceIndex {
+    private static final Logger logger = LoggerFactory.getLogger(ItemPriceIndex.class);
+
+    public enum Sort {
+        PRICE, NAME
+    }
+
+    private static final int MAX_PENDING = 512;
+    private static final Comparator<String> NAME_ORDER = String.CASE_INSENSITIVE_ORDER.thenComparing(Comparator.naturalOrder());
+    private static final Comparator<Priced> BY_PRICE = Comparator.comparingLong((Priced priced) -> priced.price)
+            .thenComparingLong(priced -> priced.id);
+    private static final Comparator<Priced> BY_NAME = Comparator.comparing((Priced priced) -> priced.name, NAME_ORDER)
+            .thenComparingLong(priced -> priced.id);
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final Object writeLock = new Object();
+    private final Object rebuildLock = new Object();
+    private volatile Snapshot snapshot = new Snapshot(Columns.EMPTY, Collections.emptyMap());
+    private List<ItemChangedEvent> changedDuringRebuild;
+
+    private static final class Columns {
+        static final Columns EMPTY = new Columns(new long[0], new long[0], new String[0], new long[0], new String[0]);
+
+        final long[] prices;
+        final long[] idsByPrice;
+        final String[] namesByPrice;
+        final long[] idsByName;
+        final String[] names;
+
+        Columns(long[] prices, long[] idsByPrice, String[] namesByPrice, long[] idsByName, String[] names) {
+            this.prices = prices;
+            this.idsByPrice = idsByPrice;
+            this.namesByPrice = namesByPrice;
+            this.idsByName = idsByName;
+            this.names = names;
+        }
+
+        int size() {
+            return prices.length;
+        }
+
+        /** First position whose price is not less than the given one. */
+        int pricePosition(long price) {
+            int low = 0;
+            int high = prices.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (prices[mid] < price) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    private static final class Priced {
+        final long id;
+        final long price;
+        final String name;
+
+        Priced(long id, long price, String name) {
+            this.id = id;
+            this.price = price;
+            this.name = name;
+        }
+    }
+
+    /**
+     * Columns plus the pending changes that shadow them. A pending id maps to
+     * its new entry, or to null if the item was removed.
+     */
+    private static final class Snapshot {
+        final Columns columns;
+        final Map<Long, Priced> pending;
+        final LongIntHashMap shadowed;
+        final Priced[] pendingByPrice;
+        final Priced[] pendingByName;
+
+        Snapshot(Columns columns, Map<Long, Priced> pending) {
+            this.columns = columns;
+            this.pending = pending;
+            this.shadowed = new LongIntHashMap(pending.size());
+            List<Priced> present = new ArrayList<>(pending.size());
+            for (Map.Entry<Long, Priced> entry : pending.entrySet()) {
+                shadowed.put(entry.getKey(), 1);
+                if (entry.getValue() != null) {
+                    present.add(entry.getValue());
+                }
+            }
+            this.pendingByPrice = present.toArray(new Priced[0]);
+            Arrays.sort(pendingByPrice, BY_PRICE);
+            this.pendingByName = present.toArray(new Priced[0]);
+            Arrays.sort(pendingByName, BY_NAME);
+        }
+
+        Snapshot with(ItemChangedEvent event) {
+            Item item = event.getItem();
+            Map<Long, Priced> changed = new HashMap<>(pending);
+            changed.put(item.getId(), event.getType() == ItemChangedEvent.Type.REMOVED
+                    ? null : new Priced(item.getId(), item.getPrice().getMinorUnits(), item.getName()));
+            Snapshot next = new Snapshot(columns, changed);
+            return changed.size() < MAX_PENDING ? next : new Snapshot(next.merged(), Collections.emptyMap());
+        }
+
+        boolean isShadowed(long id) {
+            return !shadowed.isEmpty() && shadowed.containsKey(id);
+        }
+
+        /** Index of the first pending entry priced at least {@code price}. */
+        int pendingPosition(long price) {
+            int position = 0;
+            while (position < pendingByPrice.length && pendingByPrice[position].price < price) {
+                position++;
+            }
+            return position;
+        }
+
+        Columns merged() {
+            int kept = 0;
+            for (long id : columns.idsByPrice) {
+                if (!isShadowed(id)) {
+                    kept++;
+                }
+            }
+            int size = kept + pendingByPrice.length;
+            long[] prices = new long[size];
+            long[] idsByPrice = new long[size];
+            String[] namesByPrice = new String[size];
+            for (int i = 0, j = 0, k = 0; k < size; k++) {
+                while (i < columns.size() && isShadowed(columns.idsByPrice[i])) {
+                    i++;
+                }
+                if (j == pendingByPrice.length || i < columns.size() && (columns.prices[i] < pendingByPrice[j].price
+                        || columns.prices[i] == pendingByPrice[j].price && columns.idsByPrice[i] < pendingByPrice[j].id)) {
+                    prices[k] = columns.prices[i];
+                    idsByPrice[k] = columns.idsByPrice[i];
+                    namesByPrice[k] = columns.namesByPrice[i++];
+                } else {
+                    prices[k] = pendingByPrice[j].price;
+                    idsByPrice[k] = pendingByPrice[j].id;
+                    namesByPrice[k] = pendingByPrice[j++].name;
+                }
+            }
+            long[] idsByName = new long[size];
+            String[] names = new String[size];
+            for (int i = 0, j = 0, k = 0; k < size; k++) {
+                while (i < columns.size() && isShadowed(columns.idsByName[i])) {
+                    i++;
+                }
+                if (j == pendingByName.length || i < columns.size()
+                        && nameBefore(columns.names[i], columns.idsByName[i], pendingByName[j])) {
+                    idsByName[k] = columns.idsByName[i];
+                    names[k] = columns.names[i++];
+                } else {
+                    idsByName[k] = pendingByName[j].id;
+                    names[k] = pendingByName[j++].name;
+                }
+            }
+            return new Columns(prices, idsByPrice, namesByPrice, idsByName, names);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        synchronized (rebuildLock) {
+            synchronized (writeLock) {
+                changedDuringRebuild = new ArrayList<>();
+            }
+            Columns loaded = null;
+            try {
+                loaded = load();
+            } finally {
+                synchronized (writeLock) {
+                    if (loaded != null) {
+                        Snapshot rebuilt = new Snapshot(loaded, Collections.emptyMap());
+                        for (ItemChangedEvent event : changedDuringRebuild) {
+                            rebuilt = rebuilt.with(event);
+                        }
+                        snapshot = rebuilt;
+                    }
+                    changedDuringRebuild = null;
+                }
+            }
+            logger.info("Indexed {} items by price and name", loaded.size());
+        }
+    }
+
+    @EventListener
+    public void onCatalogReloaded(CatalogReloadedEvent event) {
+        rebuild();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onItemChanged(ItemChangedEvent event) {
+        synchronized (writeLock) {
+            if (changedDuringRebuild != null) {
+                changedDuringRebuild.add(event);
+            }
+            snapshot = snapshot.with(event);
+        }
+    }
+
+    /**
+     * Returns the ids of up to {@code limit} items priced within
+     * {@code [minPrice, maxPrice]} (in minor units, either bound may be null),
+     * in the given order.
+     */
+    public List<Long> query(Long minPrice, Long maxPrice, Sort sort, int limit) {
+        Snapshot current = snapshot;
+        Columns columns = current.columns;
+        long low = minPrice == null ? Long.MIN_VALUE : minPrice;
+        long high = maxPrice == null ? Long.MAX_VALUE : maxPrice;
+        if (low > high || limit <= 0) {
+            return Collections.emptyList();
+        }
+        int from = columns.pricePosition(low);
+        int to = high == Long.MAX_VALUE ? columns.size() : columns.pricePosition(high + 1);
+        if (sort == Sort.PRICE) {
+            return byPrice(current, from, to, current.pendingPosition(low), high, limit);
+        }
+        if (from == 0 && to == columns.size()) {
+            return byName(current, low, high, limit);
+        }
+        return topByName(current, from, to, low, high, limit);
+    }
+
+    private static List<Long> byPrice(Snapshot current, int from, int to, int pendingFrom, long high, int limit) {
+        Columns columns = current.columns;
+        Priced[] pending = current.pendingByPrice;
+        List<Long> ids = new ArrayList<>(Math.min(limit, 64));
+        int i = from;
+        int j = pendingFrom;
+        while (ids.size() < limit) {
+            while (i < to && current.isShadowed(columns.idsByPrice[i])) {
+                i++;
+            }
+            boolean pendingLeft = j < pending.length && pending[j].price <= high;
+            if (i == to && !pendingLeft) {
+                break;
+            }
+            if (!pendingLeft || i < to && (columns.prices[i] < pending[j].price
+                    || columns.prices[i] == pending[j].price && columns.idsByPrice[i] < pending[j].id)) {
+                ids.add(columns.idsByPrice[i++]);
+            } else {
+                ids.add(pending[j++].id);
+            }
+        }
+        return ids;
+    }
+
+    /** Name order when every column entry is within the price range. */
+    private static List<Long> byName(Snapshot current, long low, long high, int limit) {
+        Columns columns = current.columns;
+        Priced[] pending = current.pendingByName;
+        List<Long> ids = new ArrayList<>(Math.min(limit, 64));
+        int i = 0;
+        int j = 0;
+        while (ids.size() < limit) {
+            while (i < columns.size() && current.isShadowed(columns.idsByName[i])) {
+                i++;
+            }
+            while (j < pending.length && (pending[j].price < low || pending[j].price > high)) {
+                j++;
+            }
+            if (i == columns.size() && j == pending.length) {
+                break;
+            }
+            if (j == pending.length || i < columns.size()
+                    && nameBefore(columns.names[i], columns.idsByName[i], pending[j])) {
+                ids.add(columns.idsByName[i++]);
+            } else {
+                ids.add(pending[j++].id);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Name order within a price range: candidates are column positions in
+     * {@code [from, to)} and, encoded as {@code -1 - index}, pending entries.
+     */
+    private static List<Long> topByName(Snapshot current, int from, int to, long low, long high, int limit) {
+        Columns columns = current.columns;
+        Priced[] pending = current.pendingByPrice;
+        Comparator<Integer> order = (a, b) -> {
+            int compared = NAME_ORDER.compare(name(current, a), name(current, b));
+            return compared != 0 ? compared : Long.compare(id(current, a), id(current, b));
+        };
+        PriorityQueue<Integer> best = new PriorityQueue<>(limit + 1, order.reversed());
+        for (int i = from; i < to; i++) {
+            if (!current.isShadowed(columns.idsByPrice[i])) {
+                offer(best, i, limit);
+            }
+        }
+        for (int j = current.pendingPosition(low); j < pending.length && pending[j].price <= high; j++) {
+            offer(best, -1 - j, limit);
+        }
+        Integer[] candidates = best.toArray(new Integer[0]);
+        Arrays.sort(candidates, order);
+        List<Long> ids = new ArrayList<>(candidates.length);
+        for (Integer candidate : candidates) {
+            ids.add(id(current, candidate));
+        }
+        return ids;
+    }
+
+    private static void offer(PriorityQueue<Integer> best, int candidate, int limit) {
+        best.add(candidate);
+        if (best.size() > limit) {
+            best.poll();
+        }
+    }
+
+    private static String name(Snapshot current, int candidate) {
+        return candidate >= 0 ? current.columns.namesByPrice[candidate] : current.pendingByPrice[-1 - candidate].name;
+    }
+
+    private static long id(Snapshot current, int candidate) {
+        return candidate >= 0 ? current.columns.idsByPrice[candidate] : current.pendingByPrice[-1 - candidate].id;
+    }
+
+    private static boolean nameBefore(String name, long id, Priced pending) {
+        int compared = NAME_ORDER.compare(name, pending.name);
+        return compared < 0 || compared == 0 && id < pending.id;
+    }
+
+    private Columns load() {
+        long[][] idsAndPrices = {new long[1024], new long[1024]};
+        String[][] loadedNames = {new String[1024]};
+        int size = transactionTemplate.execute(status -> {
+            int count = 0;
+            try (Stream<Object[]> rows = itemRepository.streamPriceColumns()) {
+                for (Iterator<Object[]> iterator = rows.iterator(); iterator.hasNext(); count++) {
+                    Object[] row = iterator.next();
+                    if (count == loadedNames[0].length) {
+                        idsAndPrices[0] = Arrays.copyOf(idsAndPrices[0], count * 2);
+                        idsAndPrices[1] = Arrays.copyOf(idsAndPrices[1], count * 2);
+                        loadedNames[0] = Arrays.copyOf(loadedNames[0], count * 2);
+                    }
+                    idsAndPrices[0][count] = (Long) row[0];
+                    idsAndPrices[1][count] = ((Money) row[1]).getMinorUnits();
+                    loadedNames[0][count] = (String) row[2];
+                }
+            }
+            return count;
+        });
+        long[] ids = idsAndPrices[0];
+        long[] pricesById = idsAndPrices[1];
+        String[] namesById = loadedNames[0];
+
+        long[] prices = new long[size];
+        long[] idsByPrice = new long[size];
+        String[] namesByPrice = new String[size];
+        int[] order = IntStream.range(0, size).boxed()
+                .sorted(Comparator.comparingLong((Integer i) -> pricesById[i]).thenComparingLong(i -> ids[i]))
+                .mapToInt(Integer::intValue).toArray();
+        for (int i = 0; i < size; i++) {
+            prices[i] = pricesById[order[i]];
+            idsByPrice[i] = ids[order[i]];
+            namesByPrice[i] = namesById[order[i]];
+        }
+        long[] idsByName = new long[size];
+        String[] names = new String[size];
+        order = IntStream.range(0, size).boxed()
+                .sorted(Comparator.comparing((Integer i) -> namesById[i], NAME_ORDER).thenComparingLong(i -> ids[i]))
+                .mapToInt(Integer::intValue).toArray();
+        for (int i = 0; i < size; i++) {
+            idsByName[i] = ids[order[i]];
+            names[i] = namesById[order[i]];
+        }
+        return new Columns(prices, idsByPrice, namesByPrice, idsByName, names);
+    }
+}
@@ -0,0 +1,479 @@
+package com.example.demo.catalog;
+
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.repositories.ItemRepository;
+import com.example.demo.util.LongIntHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * In-memory full-text index over {@link Item#getName()} and
+ * {@link Item#getDescription()}. Terms map to postings of item id to term
+ * weight (name hits count {@value #NAME_WEIGHT} times), and every term is also
+ * stored in a prefix trie so the last query token can be completed to the
+ * {@value #MAX_PREFIX_EXPANSIONS} terms under it found in the most items.
+ * Every trie node keeps those terms of its subtree ranked by document
+ * frequency, updated along the term's path as items change, so completing a
+ * prefix reads one node instead of walking the subtree under it. A
+ * query matches items containing every token and ranks them by summed
+ * idf-weighted term weight. A rebuild indexes the catalog into a new index
+ * without holding the lock, replays the item changes that arrived meanwhile,
+ * and swaps it in under a short write lock, so searches keep being served
+ * from the old index while the table is read.
+ */
+@Component
+public class ItemSearchIndex {
+    private static final Logger logger = LoggerFactory.getLogger(ItemSearchIndex.class);
+
+    static final int NAME_WEIGHT = 3;
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+    private static final double PREFIX_PENALTY = 0.8;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object rebuildLock = new Object();
+    private Index index = new Index(true);
+    private List<ItemChangedEvent> changedDuringRebuild;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        synchronized (rebuildLock) {
+            lock.writeLock().lock();
+            try {
+                changedDuringRebuild = new ArrayList<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            Index rebuilt = null;
+            try {
+                rebuilt = load();
+            } finally {
+                lock.writeLock().lock();
+                try {
+                    if (rebuilt != null) {
+                        for (ItemChangedEvent event : changedDuringRebuild) {
+                            rebuilt.apply(event);
+                        }
+                        index = rebuilt;
+                    }
+                    changedDuringRebuild = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+            logger.info("Indexed {} items for search", rebuilt.documentTerms.size());
+        }
+    }
+
+    @EventListener
+    public void onCatalogReloaded(CatalogReloadedEvent event) {
+        rebuild();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onItemChanged(ItemChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            index.apply(event);
+            if (changedDuringRebuild != null) {
+                changedDuringRebuild.add(event);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the ids of the best matching items, best first.
+     */
+    public List<Long> search(String query, int limit) {
+        List<String> tokens = tokenize(query);
+        if (tokens.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        boolean lastIsPrefix = !Character.isWhitespace(query.charAt(query.length() - 1));
+        lock.readLock().lock();
+        try {
+            List<Clause> clauses = new ArrayList<>(tokens.size());
+            for (int i = 0; i < tokens.size(); i++) {
+                Clause clause = index.clause(tokens.get(i), lastIsPrefix && i == tokens.size() - 1);
+                if (clause.size == 0) {
+                    return Collections.emptyList();
+                }
+                clauses.add(clause);
+            }
+            Clause driver = clauses.get(0);
+            for (Clause clause : clauses) {
+                if (clause.size < driver.size) {
+                    driver = clause;
+                }
+            }
+            PriorityQueue<Hit> best = new PriorityQueue<>(limit + 1);
+            LongIntHashMap seen = driver.terms.size() > 1 ? new LongIntHashMap(driver.size) : null;
+            for (LongIntHashMap termPostings : driver.terms) {
+                termPostings.forEach((itemId, weight) -> {
+                    if (seen != null && seen.put(itemId, 1) != LongIntHashMap.MISSING) {
+                        return;
+                    }
+                    double score = 0;
+                    for (Clause clause : clauses) {
+                        double clauseScore = clause.score(itemId);
+                        if (clauseScore == 0) {
+                            return;
+                        }
+                        score += clauseScore;
+                    }
+                    best.offer(new Hit(itemId, score));
+                    if (best.size() > limit) {
+                        best.poll();
+                    }
+                });
+            }
+            List<Long> ids = new ArrayList<>(best.size());
+            while (!best.isEmpty()) {
+                ids.add(best.poll().itemId);
+            }
+            Collections.reverse(ids);
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return index.documentTerms.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private Index load() {
+        return transactionTemplate.execute(status -> {
+            Index loaded = new Index(false);
+            int count = 0;
+            try (Stream<Item> items = itemRepository.streamAll()) {
+                for (Iterator<Item> iterator = items.iterator(); iterator.hasNext(); ) {
+                    loaded.add(iterator.next());
+                    if (++count % 1000 == 0) {
+                        entityManager.clear();
+                    }
+                }
+            }
+            loaded.rankAll();
+            return loaded;
+        });
+    }
+
+    /**
+     * Postings, per-item terms and term trie of one generation of the index.
+     * An index being loaded leaves the trie unranked until {@link #rankAll()}
+     * ranks every node once, bottom-up.
+     */
+    private static final class Index {
+        private final Map<String, LongIntHashMap> postings = new HashMap<>();
+        private final Map<Long, String[]> documentTerms = new HashMap<>();
+        private final TrieNode trie = new TrieNode();
+        private boolean ranked;
+
+        Index(boolean ranked) {
+            this.ranked = ranked;
+        }
+
+        void rankAll() {
+            trie.rankAll();
+            ranked = true;
+        }
+
+        void apply(ItemChangedEvent event) {
+            remove(event.getItem().getId());
+            if (event.getType() == ItemChangedEvent.Type.SAVED) {
+                add(event.getItem());
+            }
+        }
+
+        void add(Item item) {
+            Map<String, Integer> weights = new TreeMap<>();
+            for (String token : tokenize(item.getName())) {
+                weights.merge(token, NAME_WEIGHT, Integer::sum);
+            }
+            for (String token : tokenize(item.getDescription())) {
+                weights.merge(token, 1, Integer::sum);
+            }
+            long itemId = item.getId();
+            String[] terms = weights.keySet().toArray(new String[0]);
+            for (Map.Entry<String, Integer> entry : weights.entrySet()) {
+                LongIntHashMap termPostings = postings.get(entry.getKey());
+                if (termPostings == null) {
+                    termPostings = new LongIntHashMap();
+                    postings.put(entry.getKey(), termPostings);
+                }
+                termPostings.put(itemId, entry.getValue());
+                trie.update(entry.getKey(), termPostings.size() - 1, termPostings.size(), ranked);
+            }
+            documentTerms.put(itemId, terms);
+        }
+
+        void remove(long itemId) {
+            String[] terms = documentTerms.remove(itemId);
+            if (terms == null) {
+                return;
+            }
+            for (String term : terms) {
+                LongIntHashMap termPostings = postings.get(term);
+                termPostings.remove(itemId);
+                trie.update(term, termPostings.size() + 1, termPostings.size(), ranked);
+                if (termPostings.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+
+        Clause clause(String token, boolean prefix) {
+            Clause clause = new Clause();
+            if (!prefix) {
+                clause.add(postings.get(token), 1.0, documentTerms.size());
+                return clause;
+            }
+            clause.add(postings.get(token), 1.0, documentTerms.size());
+            TrieNode node = trie.find(token);
+            if (node == null) {
+                return clause;
+            }
+            for (int i = 0, expanded = 0; i < node.topSize && expanded < MAX_PREFIX_EXPANSIONS; i++) {
+                if (!node.topTerms[i].equals(token)) {
+                    clause.add(postings.get(node.topTerms[i]), PREFIX_PENALTY, documentTerms.size());
+                    expanded++;
+                }
+            }
+            return clause;
+        }
+    }
+
+    private static final class Clause {
+        private final List<LongIntHashMap> terms = new ArrayList<>(1);
+        private double[] factors = new double[1];
+        private int size;
+
+        private void add(LongIntHashMap termPostings, double boost, int documentCount) {
+            if (termPostings == null || termPostings.isEmpty()) {
+                return;
+            }
+            if (terms.size() == factors.length) {
+                factors = Arrays.copyOf(factors, factors.length * 2);
+            }
+            factors[terms.size()] = boost * Math.log(1 + (double) documentCount / termPostings.size());
+            terms.add(termPostings);
+            size += termPostings.size();
+        }
+
+        private double score(long itemId) {
+            double score = 0;
+            for (int i = 0; i < terms.size(); i++) {
+                int weight = terms.get(i).get(itemId);
+                if (weight != LongIntHashMap.MISSING) {
+                    score = Math.max(score, weight * factors[i]);
+                }
+            }
+            return score;
+        }
+    }
+
+    private static final class Hit implements Comparable<Hit> {
+        private final long itemId;
+        private final double score;
+
+        private Hit(long itemId, double score) {
+            this.itemId = itemId;
+            this.score = score;
+        }
+
+        @Override
+        public int compareTo(Hit other) {
+            int byScore = Double.compare(score, other.score);
+            return byScore != 0 ? byScore : Long.compare(other.itemId, itemId);
+        }
+    }
+
+    /**
+     * Trie node. {@code topTerms} holds the up to {@value #MAX_RANKED} terms of
+     * the subtree found in the most items, best first (ties by term), with
+     * their document frequencies in {@code topFrequencies}; a term leaving
+     * the list from its end is replaced by re-ranking the node from its
+     * children's lists, which are already exact.
+     */
+    private static final class TrieNode {
+        private static final int MAX_RANKED = MAX_PREFIX_EXPANSIONS + 1;
+
+        private final TreeMap<Character, TrieNode> children = new TreeMap<>();
+        private String term;
+        private int frequency;
+        private int termCount;
+        private String[] topTerms = new String[1];
+        private int[] topFrequencies = new int[1];
+        private int topSize;
+
+        private TrieNode find(String prefix) {
+            TrieNode node = this;
+            for (int i = 0; i < prefix.length() && node != null; i++) {
+                node = node.children.get(prefix.charAt(i));
+            }
+            return node;
+        }
+
+        /**
+         * Records that {@code word} is now found in {@code frequency} items
+         * instead of {@code previous}, adding it on 0 to 1 and pruning it on
+         * 1 to 0, and re-ranks the nodes on its path if {@code ranked}.
+         */
+        private void update(String word, int previous, int frequency, boolean ranked) {
+            update(word, 0, previous, frequency, ranked);
+        }
+
+        private boolean update(String word, int depth, int previous, int frequency, boolean ranked) {
+            if (depth == word.length()) {
+                term = frequency == 0 ? null : word;
+                this.frequency = frequency;
+            } else {
+                char c = word.charAt(depth);
+                TrieNode child = children.get(c);
+                if (child == null) {
+                    child = new TrieNode();
+                    children.put(c, child);
+                }
+                if (child.update(word, depth + 1, previous, frequency, ranked)) {
+                    children.remove(c);
+                }
+            }
+            if (previous == 0) {
+                termCount++;
+            } else if (frequency == 0) {
+                termCount--;
+            }
+            if (ranked) {
+                rank(word, previous, frequency);
+            }
+            return term == null && children.isEmpty();
+        }
+
+        private void rank(String word, int previous, int frequency) {
+            int position = -1;
+            for (int i = 0; i < topSize; i++) {
+                if (topTerms[i].equals(word)) {
+                    position = i;
+                    break;
+                }
+            }
+            if (position < 0 && frequency < previous) {
+                return;
+            }
+            if (position >= 0) {
+                System.arraycopy(topTerms, position + 1, topTerms, position, topSize - position - 1);
+                System.arraycopy(topFrequencies, position + 1, topFrequencies, position, topSize - position - 1);
+                topTerms[--topSize] = null;
+            }
+            if (frequency > 0) {
+                offer(word, frequency);
+            }
+            if (position >= 0 && frequency < previous && termCount > topSize
+                    && (frequency == 0 || topTerms[topSize - 1].equals(word))) {
+                rerank();
+            }
+        }
+
+        private void rankAll() {
+            for (TrieNode child : children.values()) {
+                child.rankAll();
+            }
+            rerank();
+        }
+
+        private void rerank() {
+            Arrays.fill(topTerms, 0, topSize, null);
+            topSize = 0;
+            if (term != null) {
+                offer(term, frequency);
+            }
+            for (TrieNode child : children.values()) {
+                for (int i = 0; i < child.topSize; i++) {
+                    if (!offer(child.topTerms[i], child.topFrequencies[i])) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        /** Inserts the term in rank order if it makes the list, and returns whether it did. */
+        private boolean offer(String word, int frequency) {
+            int position = topSize;
+            while (position > 0 && (topFrequencies[position - 1] < frequency
+                    || topFrequencies[position - 1] == frequency && topTerms[position - 1].compareTo(word) > 0)) {
+                position--;
+            }
+            if (position == MAX_RANKED) {
+                return false;
+            }
+            if (topSize == topTerms.length && topSize < MAX_RANKED) {
+                int length = Math.min(MAX_RANKED, topSize * 2);
+                topTerms = Arrays.copyOf(topTerms, length);
+                topFrequencies = Arrays.copyOf(topFrequencies, length);
+            }
+            int moved = Math.min(topSize, MAX_RANKED - 1) - position;
+            System.arraycopy(topTerms, position, topTerms, position + 1, moved);
+            System.arraycopy(topFrequencies, position, topFrequencies, position + 1, moved);
+            topTerms[position] = word;
+            topFrequencies[position] = frequency;
+            topSize = Math.min(topSize + 1, MAX_RANKED);
+            return true;
+        }
+    }
+}
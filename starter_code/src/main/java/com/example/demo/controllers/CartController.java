@@ -1,24 +1,34 @@
 package com.example.demo.controllers;
 
+import com.example.demo.cart.CartLocks;
+import com.example.demo.cart.CartStore;
+import com.example.demo.catalog.ItemCache;
 import com.example.demo.model.persistence.Cart;
 import com.example.demo.model.persistence.Item;
 import com.example.demo.model.persistence.User;
-import com.example.demo.model.persistence.repositories.CartRepository;
-import com.example.demo.model.persistence.repositories.ItemRepository;
-import com.example.demo.model.persistence.repositories.UserRepository;
+import com.example.demo.model.requests.CartOperation;
+import com.example.demo.model.requests.ModifyCartBatchRequest;
 import com.example.demo.model.requests.ModifyCartRequest;
+import com.example.demo.security.UserResolver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.IntStream;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/cart")
@@ -26,52 +36,129 @@ public class CartController {
     private static final Logger logger = LoggerFactory.getLogger(CartController.class);
 
     @Autowired
-    private UserRepository userRepository;
+    private UserResolver userResolver;
 
     @Autowired
-    private CartRepository cartRepository;
+    private CartStore cartStore;
 
     @Autowired
-    private ItemRepository itemRepository;
+    private CartLocks cartLocks;
+
+    @Autowired
+    private ItemCache itemCache;
 
     @PostMapping("/addToCart")
     public ResponseEntity<Cart> addTocart(@RequestBody ModifyCartRequest request) {
-        User user = userRepository.findByUsername(request.getUsername());
+        return locked(request.getUsername(), () -> addTocartLocked(request));
+    }
+
+    private ResponseEntity<Cart> addTocartLocked(ModifyCartRequest request) {
+        User user = userResolver.resolve(request.getUsername());
         if (user == null) {
             logger.error("Cannot find user with username: {} to addToCart", request.getUsername());
             return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
         }
-        Optional<Item> item = itemRepository.findById(request.getItemId());
+        Optional<Item> item = itemCache.findById(request.getItemId());
         if (!item.isPresent()) {
             logger.error("Cannot find item with itemId: {} to addToCart", request.getItemId());
             return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
         }
-        Cart cart = user.getCart();
-        IntStream.range(0, request.getQuantity())
-                .forEach(i -> cart.addItem(item.get()));
-        cartRepository.save(cart);
+        Cart cart = cartStore.update(user, c -> c.addItem(item.get(), request.getQuantity()));
         logger.info("Add to cart successfully");
         return ResponseEntity.ok(cart);
     }
 
     @PostMapping("/removeFromCart")
     public ResponseEntity<Cart> removeFromcart(@RequestBody ModifyCartRequest request) {
-        User user = userRepository.findByUsername(request.getUsername());
+        return locked(request.getUsername(), () -> removeFromcartLocked(request));
+    }
+
+    private ResponseEntity<Cart> removeFromcartLocked(ModifyCartRequest request) {
+        User user = userResolver.resolve(request.getUsername());
         if (user == null) {
             logger.error("Cannot find user with username: {} to removeFromCart", request.getUsername());
             return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
         }
-        Optional<Item> item = itemRepository.findById(request.getItemId());
+        Optional<Item> item = itemCache.findById(request.getItemId());
         if (!item.isPresent()) {
             logger.error("Cannot find item with itemId: {} to removeFromCart", request.getItemId());
             return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
         }
-        Cart cart = user.getCart();
-        IntStream.range(0, request.getQuantity())
-                .forEach(i -> cart.removeItem(item.get()));
-        cartRepository.save(cart);
+        Cart cart = cartStore.update(user, c -> c.removeItem(item.get(), request.getQuantity()));
         logger.info("Remove from cart successfully");
         return ResponseEntity.ok(cart);
     }
 
+    @PostMapping("/batch")
+    public ResponseEntity<Cart> batch(@RequestBody ModifyCartBatchRequest request) {
+        return locked(request.getUsername(), () -> batchLocked(request));
+    }
+
+    private ResponseEntity<Cart> batchLocked(ModifyCartBatchRequest request) {
+        User user = userResolver.resolve(request.getUsername());
+        if (user == null) {
+            logger.error("Cannot find user with username: {} to apply cart batch", request.getUsername());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+        if (request.getOperations() == null || request.getOperations().isEmpty()) {
+            logger.error("Missing operations in cart batch for username: {}", request.getUsername());
+            return ResponseEntity.badRequest().build();
+        }
+        if (request.getOperations().stream().anyMatch(operation -> operation == null || operation.getType() == null)) {
+            logger.error("Missing operation type in cart batch for username: {}", request.getUsername());
+            return ResponseEntity.badRequest().build();
+        }
+        if (request.getOperations().stream().anyMatch(operation -> operation.getQuantity() < 1)) {
+            logger.error("Invalid operation quantity in cart batch for username: {}", request.getUsername());
+            return ResponseEntity.badRequest().build();
+        }
+        Set<Long> itemIds = request.getOperations().stream()
+                .map(CartOperation::getItemId)
+                .collect(Collectors.toSet());
+        Map<Long, Item> items = itemCache.findAllById(itemIds).stream()
+                .collect(Collectors.toMap(Item::getId, Function.identity()));
+        if (items.size() != itemIds.size()) {
+            itemIds.removeAll(items.keySet());
+            logger.error("Cannot find items with itemIds: {} to apply cart batch", itemIds);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+        Cart cart = cartStore.update(user, c -> {
+            for (CartOperation operation : request.getOperations()) {
+                Item item = items.get(operation.getItemId());
+                switch (operation.getType()) {
+                    case ADD:
+                        c.addItem(item, operation.getQuantity());
+                        break;
+                    case REMOVE:
+                        c.removeItem(item, operation.getQuantity());
+                        break;
+                    case SET:
+                        c.setQuantity(item, operation.getQuantity());
+                        break;
+                }
+            }
+        });
+        logger.info("Apply {} cart operations successfully", request.getOperations().size());
+        return ResponseEntity.ok(cart);
+    }
+
+    private ResponseEntity<Cart> locked(String username, Supplier<ResponseEntity<Cart>> body) {
+        if (username == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+        Lock lock = cartLocks.forUser(username);
+        lock.lock();
+        try {
+            return body.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @ExceptionHandler(ObjectOptimisticLockingFailureException.class)
+    public ResponseEntity<Cart> conflict(ObjectOptimisticLockingFailureException e) {
+        logger.error("Cart was modified concurrently and retries were exhausted", e);
+        return ResponseEntity.status(HttpStatus.CONFLICT).build();
+    }
+
 }
@@ -1,39 +1,285 @@
 package com.example.demo.controllers;
 
+import com.example.demo.catalog.CatalogSnapshot;
+import com.example.demo.catalog.ItemCache;
+import com.example.demo.catalog.ItemImporter;
+import com.example.demo.catalog.ItemPriceIndex;
+import com.example.demo.catalog.ItemSearchIndex;
+import com.example.demo.model.money.Money;
 import com.example.demo.model.persistence.Item;
 import com.example.demo.model.persistence.repositories.ItemRepository;
+import com.example.demo.model.responses.ImportReport;
+import com.example.demo.model.responses.ItemPage;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @RestController
 @RequestMapping("/api/item")
 public class ItemController {
     private static final Logger logger = LoggerFactory.getLogger(ItemController.class);
 
+    private static final BigDecimal MAX_PRICE = Money.toBigDecimal(Long.MAX_VALUE);
+
     @Autowired
     private ItemRepository itemRepository;
 
+    @Autowired
+    private ItemCache itemCache;
+
+    @Autowired
+    private ItemSearchIndex itemSearchIndex;
+
+    @Autowired
+    private ItemPriceIndex itemPriceIndex;
+
+    @Autowired
+    private ItemImporter itemImporter;
+
+    @Autowired
+    private CatalogSnapshot catalogSnapshot;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${item.page.default-size:100}")
+    private int defaultPageSize;
+
+    @Value("${item.page.max-size:1000}")
+    private int maxPageSize;
+
+    @Value("${item.stream.chunk-size:500}")
+    private int streamChunkSize;
+
+    @Value("${item.import.directory:}")
+    private String importDirectory;
+
+    @Value("${item.search.default-limit:10}")
+    private int defaultSearchLimit;
+
+    @Value("${item.search.max-limit:100}")
+    private int maxSearchLimit;
+
     @GetMapping
-    public ResponseEntity<List<Item>> getItems() {
-        return ResponseEntity.ok(itemRepository.findAll());
+    public ResponseEntity<?> getItems(@RequestParam(required = false) Long after,
+                                      @RequestParam(required = false) Integer size,
+                                      @RequestParam(required = false) BigDecimal minPrice,
+                                      @RequestParam(required = false) BigDecimal maxPrice,
+                                      @RequestParam(required = false) String sort,
+                                      @RequestParam(required = false) Integer limit,
+                                      @RequestHeader HttpHeaders headers) {
+        if (minPrice != null || maxPrice != null || sort != null || limit != null) {
+            return queryItems(minPrice, maxPrice, sort, limit);
+        }
+        if (after == null && size == null) {
+            CatalogSnapshot.Encoded snapshot = catalogSnapshot.list();
+            return snapshot != null ? encoded(snapshot, headers) : ResponseEntity.ok(itemRepository.findAll());
+        }
+        int pageSize = Math.min(Math.max(size == null ? defaultPageSize : size, 1), maxPageSize);
+        List<Item> items = itemRepository.findByIdGreaterThanOrderByIdAsc(
+                after == null ? 0L : after, PageRequest.of(0, pageSize + 1));
+        Long nextCursor = null;
+        if (items.size() > pageSize) {
+            items = items.subList(0, pageSize);
+            nextCursor = items.get(pageSize - 1).getId();
+        }
+        return ResponseEntity.ok(new ItemPage(items, nextCursor));
+    }
+
+    private ResponseEntity<List<Item>> queryItems(BigDecimal minPrice, BigDecimal maxPrice, String sort, Integer limit) {
+        ItemPriceIndex.Sort order;
+        try {
+            order = sort == null ? ItemPriceIndex.Sort.PRICE : ItemPriceIndex.Sort.valueOf(sort.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            logger.error("Cannot sort items by: {}", sort);
+            return ResponseEntity.badRequest().build();
+        }
+        if (!isPrice(minPrice) || !isPrice(maxPrice)
+                || minPrice != null && maxPrice != null && minPrice.compareTo(maxPrice) > 0) {
+            logger.error("Invalid item price range: {} to {}", minPrice, maxPrice);
+            return ResponseEntity.badRequest().build();
+        }
+        int resultLimit = Math.min(Math.max(limit == null ? defaultPageSize : limit, 1), maxPageSize);
+        List<Long> ids = itemPriceIndex.query(
+                minPrice == null ? null : Money.toMinorUnits(minPrice),
+                maxPrice == null ? null : Money.toMinorUnits(maxPrice),
+                order, resultLimit);
+        return ResponseEntity.ok(inOrder(ids));
+    }
+
+    /** A missing bound, or a non-negative amount in whole minor units that fits a {@link Money}. */
+    private static boolean isPrice(BigDecimal amount) {
+        return amount == null || amount.signum() >= 0 && amount.compareTo(MAX_PRICE) <= 0
+                && amount.stripTrailingZeros().scale() <= Money.SCALE;
+    }
+
+    @GetMapping(params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamItems() {
+        ObjectWriter writer = objectMapper.writerFor(Item.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = out -> transactionTemplate.execute(status -> {
+            try (Stream<Item> items = itemRepository.streamAll();
+                 JsonGenerator generator = objectMapper.getFactory().createGenerator(out)
+                         .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+                generator.writeStartArray();
+                int written = 0;
+                for (Iterator<Item> iterator = items.iterator(); iterator.hasNext(); ) {
+                    writer.writeValue(generator, iterator.next());
+                    if (++written % streamChunkSize == 0) {
+                        generator.flush();
+                        entityManager.clear();
+                    }
+                }
+                generator.writeEndArray();
+                generator.flush();
+                logger.info("Streamed {} items", written);
+                return null;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON_UTF8).body(body);
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<List<Item>> searchItems(@RequestParam("q") String query,
+                                                  @RequestParam(required = false) Integer limit) {
+        int resultLimit = Math.min(Math.max(limit == null ? defaultSearchLimit : limit, 1), maxSearchLimit);
+        return ResponseEntity.ok(inOrder(itemSearchIndex.search(query, resultLimit)));
+    }
+
+    private List<Item> inOrder(List<Long> ids) {
+        Map<Long, Item> items = itemCache.findAllById(ids).stream()
+                .collect(Collectors.toMap(Item::getId, Function.identity()));
+        return ids.stream()
+                .map(items::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    @PostMapping(value = "/import", consumes = {"text/csv", "application/x-ndjson"})
+    public ResponseEntity<ImportReport> importItems(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                                    HttpServletRequest request) throws IOException {
+        ItemImporter.Format format = contentType.isCompatibleWith(MediaType.valueOf("text/csv"))
+                ? ItemImporter.Format.CSV : ItemImporter.Format.NDJSON;
+        return importReport(itemImporter.importItems(request.getInputStream(), format));
+    }
+
+    @PostMapping(value = "/import", params = "file")
+    public ResponseEntity<ImportReport> importItemsFromFile(@RequestParam String file) throws IOException {
+        if (importDirectory.isEmpty()) {
+            logger.error("Cannot import {}: item.import.directory is not configured", file);
+            return ResponseEntity.notFound().build();
+        }
+        Path directory = Paths.get(importDirectory).toAbsolutePath().normalize();
+        Path path = directory.resolve(file).normalize();
+        if (!path.startsWith(directory) || !Files.isRegularFile(path)) {
+            logger.error("Cannot find import file: {}", file);
+            return ResponseEntity.notFound().build();
+        }
+        ItemImporter.Format format = path.getFileName().toString().endsWith(".csv")
+                ? ItemImporter.Format.CSV : ItemImporter.Format.NDJSON;
+        try (InputStream in = Files.newInputStream(path)) {
+            return importReport(itemImporter.importItems(in, format));
+        }
+    }
+
+    private ResponseEntity<ImportReport> importReport(ImportReport report) {
+        return report.isCompleted()
+                ? ResponseEntity.ok(report)
+                : ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(report);
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Item> getItemById(@PathVariable Long id) {
-        return ResponseEntity.of(itemRepository.findById(id));
+    public ResponseEntity<?> getItemById(@PathVariable Long id, @RequestHeader HttpHeaders headers) {
+        CatalogSnapshot.Encoded snapshot = catalogSnapshot.item(id);
+        return snapshot != null ? encoded(snapshot, headers) : ResponseEntity.of(itemCache.findById(id));
+    }
+
+    private static ResponseEntity<byte[]> encoded(CatalogSnapshot.Encoded snapshot, HttpHeaders requestHeaders) {
+        boolean gzip = snapshot.getGzip() != null && acceptsGzip(requestHeaders);
+        String etag = gzip ? snapshot.getGzipEtag() : snapshot.getEtag();
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(etag);
+        headers.setVary(Collections.singletonList(HttpHeaders.ACCEPT_ENCODING));
+        if (matches(requestHeaders.getIfNoneMatch(), etag)) {
+            return new ResponseEntity<>(headers, HttpStatus.NOT_MODIFIED);
+        }
+        headers.setContentType(MediaType.APPLICATION_JSON_UTF8);
+        if (gzip) {
+            headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return new ResponseEntity<>(gzip ? snapshot.getGzip() : snapshot.getJson(), headers, HttpStatus.OK);
+    }
+
+    private static boolean acceptsGzip(HttpHeaders requestHeaders) {
+        for (String value : requestHeaders.getValuesAsList(HttpHeaders.ACCEPT_ENCODING)) {
+            String[] parts = value.split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                return parts.length == 1 || !parts[1].trim().matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    private static boolean matches(List<String> ifNoneMatch, String etag) {
+        for (String candidate : ifNoneMatch) {
+            if (candidate.equals("*") || candidate.equals(etag)
+                    || candidate.startsWith("W/") && candidate.substring(2).equals(etag)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     @GetMapping("/name/{name}")
     public ResponseEntity<List<Item>> getItemsByName(@PathVariable String name) {
-        List<Item> items = itemRepository.findByName(name);
+        List<Item> items = itemCache.findByName(name);
         if (items == null || items.isEmpty()) {
             logger.error("Cannot find items with name: {}", name);
             return ResponseEntity.notFound().build();
@@ -1,49 +1,200 @@
 package com.example.demo.controllers;
 
+import com.example.demo.cart.CartStore;
 import com.example.demo.model.persistence.User;
 import com.example.demo.model.persistence.UserOrder;
+import com.example.demo.model.persistence.UserOrderSummary;
 import com.example.demo.model.persistence.repositories.OrderRepository;
-import com.example.demo.model.persistence.repositories.UserRepository;
+import com.example.demo.model.persistence.repositories.UserOrderSummaryRepository;
+import com.example.demo.model.responses.OrderPage;
+import com.example.demo.model.responses.OrderReceipt;
+import com.example.demo.order.IdempotentSubmissions;
+import com.example.demo.order.OrderExporter;
+import com.example.demo.order.OrderIntake;
+import com.example.demo.order.OrderIntakeFullException;
+import com.example.demo.security.AdminUsers;
+import com.example.demo.security.UserResolver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.net.URI;
+import java.time.Instant;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 
 @RestController
 @RequestMapping("/api/order")
 public class OrderController {
     private static final Logger logger = LoggerFactory.getLogger(OrderController.class);
 
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 64;
+    private static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv;charset=UTF-8");
+    private static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson;charset=UTF-8");
+
     @Autowired
-    private UserRepository userRepository;
+    private UserResolver userResolver;
 
     @Autowired
     private OrderRepository orderRepository;
 
+    @Autowired
+    private UserOrderSummaryRepository summaryRepository;
+
+    @Autowired
+    private CartStore cartStore;
+
+    @Autowired
+    private OrderIntake orderIntake;
+
+    @Autowired
+    private IdempotentSubmissions idempotentSubmissions;
+
+    @Autowired
+    private OrderExporter orderExporter;
+
+    @Value("${order.page.default-size:50}")
+    private int defaultPageSize;
+
+    @Value("${order.page.max-size:500}")
+    private int maxPageSize;
 
     @PostMapping("/submit/{username}")
-    public ResponseEntity<UserOrder> submit(@PathVariable String username) {
-        User user = userRepository.findByUsername(username);
+    public ResponseEntity<OrderReceipt> submit(@PathVariable String username,
+                                               @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        OrderReceipt receipt;
+        if (idempotencyKey == null) {
+            receipt = accept(username, null);
+        } else if (idempotencyKey.trim().isEmpty() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            logger.error("Invalid {} header for user {}", IDEMPOTENCY_KEY, username);
+            return ResponseEntity.badRequest().build();
+        } else {
+            receipt = idempotentSubmissions.submitOnce(username, idempotencyKey, () -> accept(username, idempotencyKey));
+        }
+        if (receipt == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/order/status/" + receipt.getReference()))
+                .body(receipt);
+    }
+
+    private OrderReceipt accept(String username, String idempotencyKey) {
+        User user = userResolver.resolve(username);
         if (user == null) {
             logger.error("Cannot find user with username: {} to submit order", username);
+            return null;
+        }
+        cartStore.flush(username);
+        OrderReceipt receipt = orderIntake.accept(user, cartStore.load(user), idempotencyKey);
+        logger.info("Accepted order {} for user {}", receipt.getReference(), username);
+        return receipt;
+    }
+
+    @GetMapping("/status/{reference}")
+    public ResponseEntity<OrderReceipt> getOrderStatus(@PathVariable String reference) {
+        OrderReceipt receipt = orderIntake.status(reference);
+        if (receipt == null) {
+            logger.error("Cannot find order with reference: {}", reference);
             return ResponseEntity.notFound().build();
         }
-        UserOrder order = UserOrder.createFromCart(user.getCart());
-        orderRepository.save(order);
-        logger.info("Submit order for user {} successfully", username);
-        return ResponseEntity.ok(order);
+        return ResponseEntity.ok(receipt);
     }
 
     @GetMapping("/history/{username}")
-    public ResponseEntity<List<UserOrder>> getOrdersForUser(@PathVariable String username) {
-        User user = userRepository.findByUsername(username);
+    public ResponseEntity<?> getOrdersForUser(@PathVariable String username,
+                                              @RequestParam(required = false) Long before,
+                                              @RequestParam(required = false) Integer size) {
+        User user = userResolver.resolve(username);
         if (user == null) {
             logger.error("Cannot find user with username: {} to get order history", username);
             return ResponseEntity.notFound().build();
         }
-        return ResponseEntity.ok(orderRepository.findByUser(user));
+        if (before == null && size == null) {
+            return ResponseEntity.ok(orderRepository.findWithItemsByUser(user));
+        }
+        int pageSize = Math.min(Math.max(size == null ? defaultPageSize : size, 1), maxPageSize);
+        List<Long> ids = orderRepository.findIdsByUserBefore(
+                user, before == null ? Long.MAX_VALUE : before, PageRequest.of(0, pageSize + 1));
+        Long nextCursor = null;
+        if (ids.size() > pageSize) {
+            ids = ids.subList(0, pageSize);
+            nextCursor = ids.get(pageSize - 1);
+        }
+        List<UserOrder> orders = ids.isEmpty() ? Collections.emptyList() : orderRepository.findWithItemsByIdIn(ids);
+        return ResponseEntity.ok(new OrderPage(orders, nextCursor));
+    }
+
+    @GetMapping("/summary/{username}")
+    public ResponseEntity<UserOrderSummary> getOrderSummary(@PathVariable String username) {
+        UserOrderSummary summary = summaryRepository.findByUsername(username);
+        if (summary != null) {
+            return ResponseEntity.ok(summary);
+        }
+        User user = userResolver.resolve(username);
+        if (user == null) {
+            logger.error("Cannot find user with username: {} to get order summary", username);
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(new UserOrderSummary(user.getId()));
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportOrders(
+            @RequestParam(required = false) String username,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(defaultValue = "ndjson") String format,
+            Authentication authentication) {
+        OrderExporter.Format exportFormat;
+        try {
+            exportFormat = OrderExporter.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            logger.error("Unsupported order export format: {}", format);
+            return ResponseEntity.badRequest().build();
+        }
+        if ((from == null) != (to == null) || username == null && from == null) {
+            logger.error("Order export needs a username or both from and to");
+            return ResponseEntity.badRequest().build();
+        }
+        String exported = username;
+        if (!AdminUsers.isAdmin(authentication)) {
+            if (username != null && !username.equals(authentication.getName())) {
+                logger.error("User {} cannot export the orders of user {}", authentication.getName(), username);
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+            }
+            exported = authentication.getName();
+        }
+        if (exported != null && userResolver.resolve(exported) == null) {
+            logger.error("Cannot find user with username: {} to export orders", exported);
+            return ResponseEntity.notFound().build();
+        }
+        String owner = exported;
+        StreamingResponseBody body = out -> orderExporter.export(out, exportFormat, owner, from, to);
+        return ResponseEntity.ok()
+                .contentType(exportFormat == OrderExporter.Format.CSV ? TEXT_CSV : APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"orders."
+                        + exportFormat.name().toLowerCase(Locale.ROOT) + "\"")
+                .body(body);
+    }
+
+    @ExceptionHandler(OrderIntakeFullException.class)
+    public ResponseEntity<Void> handleIntakeFull(OrderIntakeFullException e) {
+        logger.error("Rejecting order submission: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .build();
     }
 }
@@ -5,20 +5,31 @@ import com.example.demo.model.persistence.User;
 import com.example.demo.model.persistence.repositories.CartRepository;
 import com.example.demo.model.persistence.repositories.UserRepository;
 import com.example.demo.model.requests.CreateUserRequest;
+import com.example.demo.security.JwtTokens;
+import com.example.demo.security.LoginThrottle;
+import com.example.demo.security.PasswordHashingBusyException;
+import com.example.demo.security.RevokedTokens;
+import com.example.demo.security.UserDetailsServiceImpl;
+import com.example.demo.security.UserResolver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletRequest;
+
 @RestController
 @RequestMapping("/api/user")
 public class UserController {
     private static final Logger logger = LoggerFactory.getLogger(UserController.class);
 
     @Autowired
-    private BCryptPasswordEncoder bCryptPasswordEncoder;
+    private PasswordEncoder passwordEncoder;
 
     @Autowired
     private UserRepository userRepository;
@@ -26,6 +37,18 @@ public class UserController {
     @Autowired
     private CartRepository cartRepository;
 
+    @Autowired
+    private UserDetailsServiceImpl userDetailsService;
+
+    @Autowired
+    private RevokedTokens revokedTokens;
+
+    @Autowired
+    private UserResolver userResolver;
+
+    @Autowired
+    private LoginThrottle loginThrottle;
+
     @GetMapping("/id/{id}")
     public ResponseEntity<User> findById(@PathVariable Long id) {
         return ResponseEntity.of(userRepository.findById(id));
@@ -33,7 +56,7 @@ public class UserController {
 
     @GetMapping("/{username}")
     public ResponseEntity<User> findByUserName(@PathVariable String username) {
-        User user = userRepository.findByUsername(username);
+        User user = userResolver.resolve(username);
         if (user == null) {
             logger.error("Cannot find user with username: {}", username);
             return ResponseEntity.notFound().build();
@@ -43,7 +66,16 @@ public class UserController {
     }
 
     @PostMapping("/create")
-    public ResponseEntity<?> createUser(@RequestBody CreateUserRequest createUserRequest) {
+    public ResponseEntity<?> createUser(@RequestBody CreateUserRequest createUserRequest, HttpServletRequest request) {
+        long retryAfterSeconds = loginThrottle.acquire(
+                LoginThrottle.Endpoint.SIGNUP, createUserRequest.getUsername(), request.getRemoteAddr());
+        if (retryAfterSeconds > 0) {
+            logger.error("Throttling user creation for username {} from {}",
+                    createUserRequest.getUsername(), request.getRemoteAddr());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                    .build();
+        }
         if (userRepository.findByUsername(createUserRequest.getUsername()) != null) {
             logger.error("The username {} already exists", createUserRequest.getUsername());
             return ResponseEntity.badRequest().body("The username already exists");
@@ -59,11 +91,34 @@ public class UserController {
             logger.error("Either length is less than 7 or pass and conf pass do not match. Unable to create user with username: {}", createUserRequest.getUsername());
             return ResponseEntity.badRequest().body("Either length is less than 7 or pass and conf pass do not match. Unable to create" + createUserRequest.getUsername());
         }
-        user.setPassword(bCryptPasswordEncoder.encode(createUserRequest.getPassword()));
+        user.setPassword(passwordEncoder.encode(createUserRequest.getPassword()));
 
         userRepository.save(user);
+        userDetailsService.evict(user.getUsername());
         logger.info("User is created successfully");
         return ResponseEntity.ok(user);
     }
 
+    @PostMapping("/logout")
+    public ResponseEntity<Void> logout(Authentication authentication) {
+        if (authentication == null || !(authentication.getDetails() instanceof JwtTokens.VerifiedToken)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        JwtTokens.VerifiedToken token = (JwtTokens.VerifiedToken) authentication.getDetails();
+        if (token.getId() == null) {
+            logger.error("Cannot revoke a token without id for user {}", token.getUsername());
+            return ResponseEntity.badRequest().build();
+        }
+        revokedTokens.revoke(token.getId(), token.getExpiresAt());
+        logger.info("Revoked token {} of user {}", token.getId(), token.getUsername());
+        return ResponseEntity.noContent().build();
+    }
+
+    @ExceptionHandler(PasswordHashingBusyException.class)
+    public ResponseEntity<Void> handleHashingBusy(PasswordHashingBusyException e) {
+        logger.error("Rejecting user creation: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .build();
+    }
 }
@@ -0,0 +1,23 @@
+package com.example.demo.model.money;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+import java.math.BigDecimal;
+
+/**
+ * Maps a raw {@code long} minor-unit amount to the same decimal column a
+ * {@link Money} attribute uses, for fields updated on hot paths.
+ */
+@Converter
+public class MinorUnitsConverter implements AttributeConverter<Long, BigDecimal> {
+
+    @Override
+    public BigDecimal convertToDatabaseColumn(Long attribute) {
+        return attribute == null ? null : Money.toBigDecimal(attribute);
+    }
+
+    @Override
+    public Long convertToEntityAttribute(BigDecimal dbData) {
+        return dbData == null ? 0L : Money.toMinorUnits(dbData);
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.demo.model.money;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Immutable amount of money held as a {@code long} count of minor units
+ * (cents). Amounts with more than two decimals are rounded half-even when
+ * converted from {@link BigDecimal}, arithmetic that overflows a long throws
+ * {@link ArithmeticException}. Serialized to JSON as a plain decimal number,
+ * e.g. {@code 2.99}.
+ */
+@JsonSerialize(using = Money.Serializer.class)
+@JsonDeserialize(using = Money.Deserializer.class)
+public final class Money implements Comparable<Money>, Serializable {
+    public static final int SCALE = 2;
+    public static final RoundingMode ROUNDING = RoundingMode.HALF_EVEN;
+    public static final Money ZERO = new Money(0);
+
+    private final long minorUnits;
+
+    private Money(long minorUnits) {
+        this.minorUnits = minorUnits;
+    }
+
+    public static Money ofMinorUnits(long minorUnits) {
+        return minorUnits == 0 ? ZERO : new Money(minorUnits);
+    }
+
+    public static Money of(BigDecimal amount) {
+        return ofMinorUnits(toMinorUnits(amount));
+    }
+
+    public static Money parse(String amount) {
+        return of(new BigDecimal(amount.trim()));
+    }
+
+    public static long toMinorUnits(BigDecimal amount) {
+        return amount.setScale(SCALE, ROUNDING).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal toBigDecimal(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    public long getMinorUnits() {
+        return minorUnits;
+    }
+
+    public Money plus(Money other) {
+        return ofMinorUnits(Math.addExact(minorUnits, other.minorUnits));
+    }
+
+    public Money minus(Money other) {
+        return ofMinorUnits(Math.subtractExact(minorUnits, other.minorUnits));
+    }
+
+    public Money times(long quantity) {
+        return ofMinorUnits(Math.multiplyExact(minorUnits, quantity));
+    }
+
+    public BigDecimal toBigDecimal() {
+        return toBigDecimal(minorUnits);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof Money && ((Money) obj).minorUnits == minorUnits;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(minorUnits);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+
+    public static class Serializer extends StdSerializer<Money> {
+
+        public Serializer() {
+            super(Money.class);
+        }
+
+        @Override
+        public void serialize(Money value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeNumber(value.toBigDecimal());
+        }
+    }
+
+    public static class Deserializer extends StdDeserializer<Money> {
+
+        public Deserializer() {
+            super(Money.class);
+        }
+
+        @Override
+        public Money deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            if (p.hasToken(JsonToken.VALUE_NUMBER_INT) || p.hasToken(JsonToken.VALUE_NUMBER_FLOAT)) {
+                return Money.of(p.getDecimalValue());
+            }
+            if (p.hasToken(JsonToken.VALUE_STRING)) {
+                try {
+                    return Money.parse(p.getText());
+                } catch (NumberFormatException e) {
+                    return (Money) ctxt.handleWeirdStringValue(Money.class, p.getText(), "not a decimal amount");
+                }
+            }
+            return (Money) ctxt.handleUnexpectedToken(Money.class, p);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.demo.model.money;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+import java.math.BigDecimal;
+
+@Converter
+public class MoneyConverter implements AttributeConverter<Money, BigDecimal> {
+
+    @Override
+    public BigDecimal convertToDatabaseColumn(Money attribute) {
+        return attribute == null ? null : attribute.toBigDecimal();
+    }
+
+    @Override
+    public Money convertToEntityAttribute(BigDecimal dbData) {
+        return dbData == null ? null : Money.of(dbData);
+    }
+}
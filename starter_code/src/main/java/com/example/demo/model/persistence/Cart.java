@@ -1,9 +1,12 @@
 package com.example.demo.model.persistence;
 
+import com.example.demo.model.money.MinorUnitsConverter;
+import com.example.demo.model.money.Money;
+import com.example.demo.util.LongIntHashMap;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import javax.persistence.*;
-import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -17,25 +20,48 @@ public class Cart {
     @Column
     private Long id;
 
-    @ManyToMany
+    @ElementCollection
+    @CollectionTable(name = "cart_item", joinColumns = @JoinColumn(name = "cart_id"))
+    @OrderColumn(name = "line_index")
     @JsonProperty
-    @Column
-    private List<Item> items;
+    private List<CartItem> items = new ArrayList<>();
 
     @OneToOne(mappedBy = "cart")
     @JsonProperty
     private User user;
 
-    @Column
+    @Column(name = "total")
+    @Convert(converter = MinorUnitsConverter.class)
+    private long totalMinorUnits;
+
+    @Version
+    @JsonIgnore
+    private Long version;
+
+    @Transient
+    @JsonIgnore
+    private LongIntHashMap lineIndex;
+
     @JsonProperty
-    private BigDecimal total;
+    public Money getTotal() {
+        return Money.ofMinorUnits(totalMinorUnits);
+    }
+
+    public void setTotal(Money total) {
+        this.totalMinorUnits = total.getMinorUnits();
+    }
+
+    @JsonIgnore
+    public long getTotalMinorUnits() {
+        return totalMinorUnits;
+    }
 
-    public BigDecimal getTotal() {
-        return total;
+    public Long getVersion() {
+        return version;
     }
 
-    public void setTotal(BigDecimal total) {
-        this.total = total;
+    public void setVersion(Long version) {
+        this.version = version;
     }
 
     public User getUser() {
@@ -54,33 +80,117 @@ public class Cart {
         this.id = id;
     }
 
-    public List<Item> getItems() {
+    public List<CartItem> getItems() {
         return items;
     }
 
-    public void setItems(List<Item> items) {
+    public void setItems(List<CartItem> items) {
         this.items = items;
+        this.lineIndex = null;
     }
 
     public void addItem(Item item) {
+        addItem(item, 1);
+    }
+
+    public void addItem(Item item, int quantity) {
+        if (quantity <= 0) {
+            return;
+        }
         if (items == null) {
             items = new ArrayList<>();
         }
-        items.add(item);
-        if (total == null) {
-            total = new BigDecimal(0);
+        CartItem line = findLine(item.getId());
+        if (line == null) {
+            line = new CartItem(item.getId(), 0, item.getPrice());
+            items.add(line);
+            index().put(item.getId(), items.size() - 1);
         }
-        total = total.add(item.getPrice());
+        line.setQuantity(line.getQuantity() + quantity);
+        totalMinorUnits = Math.addExact(totalMinorUnits,
+                Math.multiplyExact(line.getUnitPrice().getMinorUnits(), (long) quantity));
     }
 
     public void removeItem(Item item) {
-        if (items == null) {
-            items = new ArrayList<>();
+        removeItem(item, 1);
+    }
+
+    public void removeItem(Item item, int quantity) {
+        if (quantity <= 0 || items == null) {
+            return;
+        }
+        CartItem line = findLine(item.getId());
+        if (line == null) {
+            return;
         }
-        items.remove(item);
-        if (total == null) {
-            total = new BigDecimal(0);
+        int removed = Math.min(quantity, line.getQuantity());
+        if (removed == line.getQuantity()) {
+            removeLine(item.getId());
+        } else {
+            line.setQuantity(line.getQuantity() - removed);
+        }
+        totalMinorUnits = Math.subtractExact(totalMinorUnits,
+                Math.multiplyExact(line.getUnitPrice().getMinorUnits(), (long) removed));
+    }
+
+    public boolean contains(long itemId) {
+        return items != null && index().containsKey(itemId);
+    }
+
+    public int getQuantity(long itemId) {
+        CartItem line = items == null ? null : findLine(itemId);
+        return line == null ? 0 : line.getQuantity();
+    }
+
+    public void setQuantity(Item item, int quantity) {
+        int current = getQuantity(item.getId());
+        if (quantity > current) {
+            addItem(item, quantity - current);
+        } else if (quantity < current) {
+            removeItem(item, current - Math.max(quantity, 0));
+        }
+    }
+
+    public Cart copy() {
+        Cart copy = new Cart();
+        copy.id = id;
+        copy.user = user;
+        copy.totalMinorUnits = totalMinorUnits;
+        copy.version = version;
+        copy.items = new ArrayList<>(items == null ? 0 : items.size());
+        if (items != null) {
+            for (CartItem line : items) {
+                copy.items.add(new CartItem(line.getItemId(), line.getQuantity(), line.getUnitPrice()));
+            }
+        }
+        return copy;
+    }
+
+    private CartItem findLine(long itemId) {
+        int position = index().get(itemId);
+        return position == LongIntHashMap.MISSING ? null : items.get(position);
+    }
+
+    /**
+     * Moves the last line into the removed line's slot, so a removal rewrites
+     * at most one other line instead of shifting every later one.
+     */
+    private void removeLine(long itemId) {
+        int position = index().remove(itemId);
+        CartItem last = items.remove(items.size() - 1);
+        if (position < items.size()) {
+            items.set(position, last);
+            lineIndex.put(last.getItemId(), position);
+        }
+    }
+
+    private LongIntHashMap index() {
+        if (lineIndex == null || lineIndex.size() != items.size()) {
+            lineIndex = new LongIntHashMap(items.size());
+            for (int i = 0; i < items.size(); i++) {
+                lineIndex.put(items.get(i).getItemId(), i);
+            }
         }
-        total = total.subtract(item.getPrice());
+        return lineIndex;
     }
 }
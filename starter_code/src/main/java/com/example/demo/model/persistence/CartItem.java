@@ -0,0 +1,59 @@
+package com.example.demo.model.persistence;
+
+import com.example.demo.model.money.Money;
+import com.example.demo.model.money.MoneyConverter;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.persistence.Column;
+import javax.persistence.Convert;
+import javax.persistence.Embeddable;
+
+@Embeddable
+public class CartItem {
+
+    @Column(name = "item_id", nullable = false)
+    @JsonProperty
+    private Long itemId;
+
+    @Column(nullable = false)
+    @JsonProperty
+    private int quantity;
+
+    @Column(nullable = false)
+    @Convert(converter = MoneyConverter.class)
+    @JsonProperty
+    private Money unitPrice;
+
+    public CartItem() {
+    }
+
+    public CartItem(Long itemId, int quantity, Money unitPrice) {
+        this.itemId = itemId;
+        this.quantity = quantity;
+        this.unitPrice = unitPrice;
+    }
+
+    public Long getItemId() {
+        return itemId;
+    }
+
+    public void setItemId(Long itemId) {
+        this.itemId = itemId;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+
+    public Money getUnitPrice() {
+        return unitPrice;
+    }
+
+    public void setUnitPrice(Money unitPrice) {
+        this.unitPrice = unitPrice;
+    }
+}
@@ -1,12 +1,15 @@
 package com.example.demo.model.persistence;
 
+import com.example.demo.catalog.ItemEntityListener;
+import com.example.demo.model.money.Money;
+import com.example.demo.model.money.MoneyConverter;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import javax.persistence.*;
-import java.math.BigDecimal;
 
 @Entity
 @Table(name = "item")
+@EntityListeners(ItemEntityListener.class)
 public class Item {
 
     @Id
@@ -19,8 +22,9 @@ public class Item {
     private String name;
 
     @Column(nullable = false)
+    @Convert(converter = MoneyConverter.class)
     @JsonProperty
-    private BigDecimal price;
+    private Money price;
 
     @Column(nullable = false)
     @JsonProperty
@@ -64,11 +68,11 @@ public class Item {
         this.name = name;
     }
 
-    public BigDecimal getPrice() {
+    public Money getPrice() {
         return price;
     }
 
-    public void setPrice(BigDecimal price) {
+    public void setPrice(Money price) {
         this.price = price;
     }
 
@@ -0,0 +1,61 @@
+package com.example.demo.model.persistence;
+
+import com.example.demo.model.money.Money;
+import com.example.demo.model.money.MoneyConverter;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.persistence.Column;
+import javax.persistence.Convert;
+import javax.persistence.Embeddable;
+
+/**
+ * One line of a placed order, captured from the cart when the order was
+ * accepted. Lines never change after insert and do not reference the live
+ * {@link Item}, so order reads stay correct when the catalog changes.
+ */
+@Embeddable
+public class OrderItem {
+
+    @Column(name = "item_id", nullable = false, updatable = false)
+    @JsonProperty
+    private Long itemId;
+
+    @Column(name = "name", updatable = false)
+    @JsonProperty
+    private String name;
+
+    @Column(nullable = false, updatable = false)
+    @JsonProperty
+    private int quantity;
+
+    @Column(nullable = false, updatable = false)
+    @Convert(converter = MoneyConverter.class)
+    @JsonProperty
+    private Money unitPrice;
+
+    protected OrderItem() {
+    }
+
+    public OrderItem(Long itemId, String name, int quantity, Money unitPrice) {
+        this.itemId = itemId;
+        this.name = name;
+        this.quantity = quantity;
+        this.unitPrice = unitPrice;
+    }
+
+    public Long getItemId() {
+        return itemId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public Money getUnitPrice() {
+        return unitPrice;
+    }
+}
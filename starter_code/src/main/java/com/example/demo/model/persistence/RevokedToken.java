@@ -0,0 +1,35 @@
+package com.example.demo.model.persistence;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.time.Instant;
+
+@Entity
+@Table(name = "revoked_token")
+public class RevokedToken {
+
+    @Id
+    @Column(name = "jti", length = 36)
+    private String jti;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    protected RevokedToken() {
+    }
+
+    public RevokedToken(String jti, Instant expiresAt) {
+        this.jti = jti;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getJti() {
+        return jti;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+}
@@ -1,14 +1,19 @@
 package com.example.demo.model.persistence;
 
+import com.example.demo.model.money.MinorUnitsConverter;
+import com.example.demo.model.money.Money;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import org.hibernate.annotations.Immutable;
 
 import javax.persistence.*;
-import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Entity
-@Table(name = "user_order")
+@Immutable
+@Table(name = "user_order", uniqueConstraints =
+        @UniqueConstraint(name = "uk_user_order_idempotency_key", columnNames = {"user_id", "idempotency_key"}))
 public class UserOrder {
 
     @Id
@@ -17,27 +22,32 @@ public class UserOrder {
     @Column
     private Long id;
 
-    @ManyToMany(cascade = CascadeType.ALL)
+    @ElementCollection
+    @CollectionTable(name = "user_order_item", joinColumns = @JoinColumn(name = "order_id"))
+    @OrderColumn(name = "line_index")
     @JsonProperty
-    @Column
-    private List<Item> items;
+    private List<OrderItem> items;
 
     @ManyToOne
     @JoinColumn(name = "user_id", nullable = false, referencedColumnName = "id")
     @JsonProperty
     private User user;
 
+    @Column(name = "total")
+    @Convert(converter = MinorUnitsConverter.class)
+    private long totalMinorUnits;
+
+    @Column(name = "created_at")
     @JsonProperty
-    @Column
-    private BigDecimal total;
-
-    public static UserOrder createFromCart(Cart cart) {
-        UserOrder order = new UserOrder();
-        order.setItems(cart.getItems().stream().collect(Collectors.toList()));
-        order.setTotal(cart.getTotal());
-        order.setUser(cart.getUser());
-        return order;
-    }
+    private Instant createdAt;
+
+    @Column(name = "reference", unique = true, length = 36)
+    @JsonProperty
+    private String reference;
+
+    @Column(name = "idempotency_key", length = 64)
+    @JsonIgnore
+    private String idempotencyKey;
 
     public Long getId() {
         return id;
@@ -47,11 +57,11 @@ public class UserOrder {
         this.id = id;
     }
 
-    public List<Item> getItems() {
+    public List<OrderItem> getItems() {
         return items;
     }
 
-    public void setItems(List<Item> items) {
+    public void setItems(List<OrderItem> items) {
         this.items = items;
     }
 
@@ -63,12 +73,37 @@ public class UserOrder {
         this.user = user;
     }
 
-    public BigDecimal getTotal() {
-        return total;
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public String getReference() {
+        return reference;
+    }
+
+    public void setReference(String reference) {
+        this.reference = reference;
+    }
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    @JsonProperty
+    public Money getTotal() {
+        return Money.ofMinorUnits(totalMinorUnits);
     }
 
-    public void setTotal(BigDecimal total) {
-        this.total = total;
+    public void setTotal(Money total) {
+        this.totalMinorUnits = total.getMinorUnits();
     }
 
 }
@@ -0,0 +1,161 @@
+package com.example.demo.model.persistence;
+
+import com.example.demo.model.money.MinorUnitsConverter;
+import com.example.demo.model.money.Money;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.persistence.*;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Lifetime order totals of one user, updated in the transaction that inserts
+ * each order. Top items are tracked with the Space-Saving algorithm over
+ * {@link #TRACKED_ITEMS} counters stored as {@code itemId:quantity} pairs in
+ * one column: an item that is not tracked replaces the smallest counter and
+ * inherits its count, so reported quantities are upper bounds and any item
+ * bought more often than that smallest count is guaranteed to be listed.
+ */
+@Entity
+@Table(name = "user_order_summary")
+public class UserOrderSummary {
+    public static final int TRACKED_ITEMS = 10;
+    private static final int REPORTED_ITEMS = 5;
+
+    @Id
+    @Column(name = "user_id")
+    @JsonIgnore
+    private Long userId;
+
+    @Column(name = "order_count", nullable = false)
+    @JsonProperty
+    private long orderCount;
+
+    @Column(name = "total_spent")
+    @Convert(converter = MinorUnitsConverter.class)
+    private long totalSpentMinorUnits;
+
+    @Column(name = "last_order_at")
+    @JsonProperty
+    private Instant lastOrderAt;
+
+    @Column(name = "top_items", length = 512)
+    @JsonIgnore
+    private String topItems = "";
+
+    public UserOrderSummary() {
+    }
+
+    public UserOrderSummary(Long userId) {
+        this.userId = userId;
+    }
+
+    public void record(UserOrder order) {
+        orderCount++;
+        totalSpentMinorUnits = Math.addExact(totalSpentMinorUnits, order.getTotal().getMinorUnits());
+        if (order.getCreatedAt() != null && (lastOrderAt == null || order.getCreatedAt().isAfter(lastOrderAt))) {
+            lastOrderAt = order.getCreatedAt();
+        }
+        if (order.getItems() == null || order.getItems().isEmpty()) {
+            return;
+        }
+        List<ItemQuantity> counters = decode(topItems);
+        for (OrderItem line : order.getItems()) {
+            count(counters, line.getItemId(), line.getQuantity());
+        }
+        topItems = encode(counters);
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public long getOrderCount() {
+        return orderCount;
+    }
+
+    @JsonProperty
+    public Money getTotalSpent() {
+        return Money.ofMinorUnits(totalSpentMinorUnits);
+    }
+
+    public Instant getLastOrderAt() {
+        return lastOrderAt;
+    }
+
+    @JsonProperty
+    public List<ItemQuantity> getTopItems() {
+        List<ItemQuantity> counters = decode(topItems);
+        counters.sort(Comparator.comparingLong(ItemQuantity::getQuantity).reversed()
+                .thenComparing(ItemQuantity::getItemId));
+        return counters.size() > REPORTED_ITEMS ? counters.subList(0, REPORTED_ITEMS) : counters;
+    }
+
+    private static void count(List<ItemQuantity> counters, long itemId, long quantity) {
+        ItemQuantity smallest = null;
+        for (ItemQuantity counter : counters) {
+            if (counter.itemId == itemId) {
+                counter.quantity += quantity;
+                return;
+            }
+            if (smallest == null || counter.quantity < smallest.quantity) {
+                smallest = counter;
+            }
+        }
+        if (counters.size() < TRACKED_ITEMS) {
+            counters.add(new ItemQuantity(itemId, quantity));
+        } else {
+            smallest.itemId = itemId;
+            smallest.quantity += quantity;
+        }
+    }
+
+    private static List<ItemQuantity> decode(String encoded) {
+        List<ItemQuantity> counters = new ArrayList<>(TRACKED_ITEMS);
+        if (encoded == null || encoded.isEmpty()) {
+            return counters;
+        }
+        for (String pair : encoded.split(",")) {
+            int separator = pair.indexOf(':');
+            counters.add(new ItemQuantity(Long.parseLong(pair.substring(0, separator)),
+                    Long.parseLong(pair.substring(separator + 1))));
+        }
+        return counters;
+    }
+
+    private static String encode(List<ItemQuantity> counters) {
+        StringBuilder encoded = new StringBuilder(counters.size() * 12);
+        for (ItemQuantity counter : counters) {
+            if (encoded.length() > 0) {
+                encoded.append(',');
+            }
+            encoded.append(counter.itemId).append(':').append(counter.quantity);
+        }
+        return encoded.toString();
+    }
+
+    public static class ItemQuantity {
+
+        @JsonProperty
+        private long itemId;
+
+        @JsonProperty
+        private long quantity;
+
+        public ItemQuantity(long itemId, long quantity) {
+            this.itemId = itemId;
+            this.quantity = quantity;
+        }
+
+        public long getItemId() {
+            return itemId;
+        }
+
+        public long getQuantity() {
+            return quantity;
+        }
+    }
+}
@@ -1,13 +1,30 @@
 package com.example.demo.model.persistence.repositories;
 
 import com.example.demo.model.persistence.Item;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 @Repository
 public interface ItemRepository extends JpaRepository<Item, Long> {
     List<Item> findByName(String name);
 
+    List<Item> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READONLY, value = "true")})
+    @Query("select i from Item i order by i.id")
+    Stream<Item> streamAll();
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select i.id, i.price, i.name from Item i order by i.id")
+    Stream<Object[]> streamPriceColumns();
 }
@@ -2,12 +2,62 @@ package com.example.demo.model.persistence.repositories;
 
 import com.example.demo.model.persistence.User;
 import com.example.demo.model.persistence.UserOrder;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 @Repository
 public interface OrderRepository extends JpaRepository<UserOrder, Long> {
     List<UserOrder> findByUser(User user);
+
+    @Query("select o.id from UserOrder o where o.reference = :reference")
+    Long findIdByReference(@Param("reference") String reference);
+
+    @Query("select o.reference, o.id from UserOrder o where o.user.username = :username and o.idempotencyKey = :key")
+    List<Object[]> findIdByIdempotencyKey(@Param("username") String username, @Param("key") String idempotencyKey);
+
+    @Query("select o.id from UserOrder o where o.user.id = :userId and o.idempotencyKey = :key")
+    Long findIdByUserIdAndIdempotencyKey(@Param("userId") Long userId, @Param("key") String idempotencyKey);
+
+    @Query("select o.reference, o.id from UserOrder o where o.reference in :references")
+    List<Object[]> findIdsByReferenceIn(@Param("references") Collection<String> references);
+
+    @Query("select distinct o from UserOrder o left join fetch o.items where o.user = :user order by o.id")
+    List<UserOrder> findWithItemsByUser(@Param("user") User user);
+
+    @Query("select o.id from UserOrder o where o.user = :user and o.id < :before order by o.id desc")
+    List<Long> findIdsByUserBefore(@Param("user") User user, @Param("before") Long before, Pageable pageable);
+
+    @Query("select distinct o from UserOrder o join fetch o.user left join fetch o.items where o.id in :ids order by o.id desc")
+    List<UserOrder> findWithItemsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select o.id, o.reference, u.username, o.createdAt, o.totalMinorUnits from UserOrder o join o.user u"
+            + " where u.username = :username order by o.id")
+    Stream<Object[]> streamForExportByUsername(@Param("username") String username);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select o.id, o.reference, u.username, o.createdAt, o.totalMinorUnits from UserOrder o join o.user u"
+            + " where o.createdAt >= :from and o.createdAt < :to order by o.id")
+    Stream<Object[]> streamForExportBetween(@Param("from") Instant from, @Param("to") Instant to);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select o.id, o.reference, u.username, o.createdAt, o.totalMinorUnits from UserOrder o join o.user u"
+            + " where u.username = :username and o.createdAt >= :from and o.createdAt < :to order by o.id")
+    Stream<Object[]> streamForExportByUsernameBetween(@Param("username") String username,
+                                                      @Param("from") Instant from, @Param("to") Instant to);
+
+    @Query("select o.id, i from UserOrder o join o.items i where o.id in :ids order by o.id, index(i)")
+    List<Object[]> findLinesByOrderIdIn(@Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,21 @@
+package com.example.demo.model.persistence.repositories;
+
+import com.example.demo.model.persistence.UserOrderSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.LockModeType;
+
+@Repository
+public interface UserOrderSummaryRepository extends JpaRepository<UserOrderSummary, Long> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from UserOrderSummary s where s.userId = :userId")
+    UserOrderSummary findForUpdate(@Param("userId") Long userId);
+
+    @Query("select s from UserOrderSummary s, User u where u.username = :username and s.userId = u.id")
+    UserOrderSummary findByUsername(@Param("username") String username);
+}
@@ -2,9 +2,26 @@ package com.example.demo.model.persistence.repositories;
 
 import com.example.demo.model.persistence.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
     User findByUsername(String username);
+
+    @Query("select u.id, u.username, u.password from User u where u.username = :username")
+    List<Object[]> findCredentialsByUsername(@Param("username") String username);
+
+    @Query("select u.id from User u where u.username = :username")
+    Long findIdByUsername(@Param("username") String username);
+
+    @Transactional
+    @Modifying
+    @Query("update User u set u.password = :password where u.username = :username")
+    int updatePassword(@Param("username") String username, @Param("password") String password);
 }
@@ -0,0 +1,43 @@
+package com.example.demo.model.requests;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class CartOperation {
+
+    public enum Type {
+        ADD, REMOVE, SET
+    }
+
+    @JsonProperty
+    private Type type;
+
+    @JsonProperty
+    private long itemId;
+
+    @JsonProperty
+    private int quantity;
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public long getItemId() {
+        return itemId;
+    }
+
+    public void setItemId(long itemId) {
+        this.itemId = itemId;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+}
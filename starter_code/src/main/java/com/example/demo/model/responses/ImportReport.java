@@ -0,0 +1,86 @@
+package com.example.demo.model.responses;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ImportReport {
+
+    @JsonProperty
+    private long rowsRead;
+
+    @JsonProperty
+    private long rowsImported;
+
+    @JsonProperty
+    private long rowsRejected;
+
+    @JsonProperty
+    private List<String> errors = new ArrayList<>();
+
+    @JsonProperty
+    private long elapsedMillis;
+
+    @JsonProperty
+    private long rowsPerSecond;
+
+    @JsonProperty
+    private boolean completed;
+
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    public void setRowsRead(long rowsRead) {
+        this.rowsRead = rowsRead;
+    }
+
+    public long getRowsImported() {
+        return rowsImported;
+    }
+
+    public void setRowsImported(long rowsImported) {
+        this.rowsImported = rowsImported;
+    }
+
+    public long getRowsRejected() {
+        return rowsRejected;
+    }
+
+    public void setRowsRejected(long rowsRejected) {
+        this.rowsRejected = rowsRejected;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<String> errors) {
+        this.errors = errors;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public long getRowsPerSecond() {
+        return rowsPerSecond;
+    }
+
+    public void setRowsPerSecond(long rowsPerSecond) {
+        this.rowsPerSecond = rowsPerSecond;
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    public void setCompleted(boolean completed) {
+        this.completed = completed;
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.demo.model.responses;
+
+import com.example.demo.model.persistence.Item;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+public class ItemPage {
+
+    @JsonProperty
+    private List<Item> items;
+
+    @JsonProperty
+    private Long nextCursor;
+
+    public ItemPage() {
+    }
+
+    public ItemPage(List<Item> items, Long nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Item> getItems() {
+        return items;
+    }
+
+    public void setItems(List<Item> items) {
+        this.items = items;
+    }
+
+    public Long getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(Long nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
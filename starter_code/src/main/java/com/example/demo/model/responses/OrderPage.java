@@ -0,0 +1,39 @@
+package com.example.demo.model.responses;
+
+import com.example.demo.model.persistence.UserOrder;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+public class OrderPage {
+
+    @JsonProperty
+    private List<UserOrder> orders;
+
+    @JsonProperty
+    private Long nextCursor;
+
+    public OrderPage() {
+    }
+
+    public OrderPage(List<UserOrder> orders, Long nextCursor) {
+        this.orders = orders;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<UserOrder> getOrders() {
+        return orders;
+    }
+
+    public void setOrders(List<UserOrder> orders) {
+        this.orders = orders;
+    }
+
+    public Long getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(Long nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.demo.model.responses;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.Instant;
+
+public class OrderReceipt {
+
+    public enum Status {
+        ACCEPTED, PERSISTED, FAILED
+    }
+
+    @JsonProperty
+    private String reference;
+
+    @JsonProperty
+    private Status status;
+
+    @JsonProperty
+    private Long orderId;
+
+    @JsonProperty
+    private Instant acceptedAt;
+
+    public OrderReceipt() {
+    }
+
+    public OrderReceipt(String reference, Status status, Long orderId, Instant acceptedAt) {
+        this.reference = reference;
+        this.status = status;
+        this.orderId = orderId;
+        this.acceptedAt = acceptedAt;
+    }
+
+    public String getReference() {
+        return reference;
+    }
+
+    public void setReference(String reference) {
+        this.reference = reference;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public Long getOrderId() {
+        return orderId;
+    }
+
+    public void setOrderId(Long orderId) {
+        this.orderId = orderId;
+    }
+
+    public Instant getAcceptedAt() {
+        return acceptedAt;
+    }
+
+    public void setAcceptedAt(Instant acceptedAt) {
+        this.acceptedAt = acceptedAt;
+    }
+}
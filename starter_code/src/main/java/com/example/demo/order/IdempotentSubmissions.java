@@ -0,0 +1,86 @@
+package com.example.demo.order;
+
+import com.example.demo.cache.BoundedCache;
+import com.example.demo.cache.BoundedCacheMetrics;
+import com.example.demo.model.persistence.repositories.OrderRepository;
+import com.example.demo.model.responses.OrderReceipt;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Collapses order submissions that carry the same {@code Idempotency-Key}
+ * for the same user into one execution. The first submission registers a
+ * future under the key; retries and concurrent duplicates wait on that
+ * future and get its receipt without touching the database. Keys that have
+ * left the cache are looked up in the persisted orders, and then by
+ * {@link OrderIntake} among the orders still in flight; the persisted
+ * orders' unique (user, key) constraint is the final guard, and the intake
+ * answers an order it refuses with the earlier order.
+ */
+@Component
+public class IdempotentSubmissions {
+
+    private final OrderRepository orderRepository;
+    private final OrderIntake orderIntake;
+    private final BoundedCache<String, CompletableFuture<OrderReceipt>> submissions;
+
+    public IdempotentSubmissions(OrderRepository orderRepository,
+                                 OrderIntake orderIntake,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${order.idempotency.cache-size:100000}") int maximumSize,
+                                 @Value("${order.idempotency.ttl-ms:86400000}") long ttlMillis) {
+        this.orderRepository = orderRepository;
+        this.orderIntake = orderIntake;
+        this.submissions = BoundedCacheMetrics.monitor(meterRegistry,
+                new BoundedCache<>("orders.idempotency", maximumSize, ttlMillis));
+    }
+
+    /**
+     * Runs {@code submission} once per user and key and returns its receipt,
+     * or the latest state of the receipt from an earlier run. A {@code null}
+     * receipt or a failed submission is not remembered.
+     */
+    public OrderReceipt submitOnce(String username, String idempotencyKey, Supplier<OrderReceipt> submission) {
+        String key = username + '\n' + idempotencyKey;
+        CompletableFuture<OrderReceipt> created = new CompletableFuture<>();
+        CompletableFuture<OrderReceipt> existing = submissions.putIfAbsent(key, created);
+        if (existing != null) {
+            OrderReceipt receipt;
+            try {
+                receipt = existing.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+            return receipt == null ? null : orderIntake.latest(receipt);
+        }
+        try {
+            OrderReceipt receipt = persisted(username, idempotencyKey);
+            if (receipt == null) {
+                receipt = submission.get();
+            }
+            if (receipt == null) {
+                submissions.invalidate(key);
+            }
+            created.complete(receipt);
+            return receipt;
+        } catch (RuntimeException e) {
+            submissions.invalidate(key);
+            created.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private OrderReceipt persisted(String username, String idempotencyKey) {
+        List<Object[]> rows = orderRepository.findIdByIdempotencyKey(username, idempotencyKey);
+        if (rows.isEmpty()) {
+            return null;
+        }
+        return new OrderReceipt((String) rows.get(0)[0], OrderReceipt.Status.PERSISTED, (Long) rows.get(0)[1], null);
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.demo.order;
+
+import com.example.demo.model.money.Money;
+import com.example.demo.model.persistence.OrderItem;
+import com.example.demo.model.persistence.repositories.OrderRepository;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Streams placed orders as NDJSON (one order per line) or CSV (one row per
+ * order line, with a header row). Orders are read as scalar rows from a
+ * forward-only cursor in one read-only transaction; every
+ * {@code order.export.chunk-size} orders the lines of the chunk are loaded
+ * with one query, written and flushed. Nothing is attached to the persistence
+ * context, so memory stays bounded by the chunk size whatever the export
+ * length.
+ */
+@Component
+public class OrderExporter {
+    private static final Logger logger = LoggerFactory.getLogger(OrderExporter.class);
+
+    private static final String CSV_HEADER =
+            "order_id,reference,username,created_at,total,item_id,item_name,quantity,unit_price\n";
+
+    public enum Format {
+        CSV, NDJSON
+    }
+
+    private final OrderRepository orderRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final JsonFactory jsonFactory;
+    private final int chunkSize;
+
+    public OrderExporter(OrderRepository orderRepository,
+                         PlatformTransactionManager transactionManager,
+                         ObjectMapper objectMapper,
+                         @Value("${order.export.chunk-size:100}") int chunkSize) {
+        this.orderRepository = orderRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.jsonFactory = objectMapper.getFactory();
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Writes the orders of {@code username}, or of all users when it is null,
+     * and returns their count. Orders are limited to {@code [from, to)} when
+     * both bounds are given; either a username or both bounds are required.
+     */
+    public long export(OutputStream out, Format format, String username, Instant from, Instant to) {
+        Long exported = transactionTemplate.execute(status -> {
+            try (Stream<Object[]> orders = stream(username, from, to)) {
+                return format == Format.CSV ? writeCsv(out, orders.iterator()) : writeNdjson(out, orders.iterator());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        logger.info("Exported {} orders as {}", exported, format);
+        return exported;
+    }
+
+    private Stream<Object[]> stream(String username, Instant from, Instant to) {
+        if (from == null || to == null) {
+            return orderRepository.streamForExportByUsername(username);
+        }
+        return username == null
+                ? orderRepository.streamForExportBetween(from, to)
+                : orderRepository.streamForExportByUsernameBetween(username, from, to);
+    }
+
+    private long writeNdjson(OutputStream out, Iterator<Object[]> orders) throws IOException {
+        long written = 0;
+        try (JsonGenerator generator = jsonFactory.createGenerator(out, JsonEncoding.UTF8)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+            List<Object[]> chunk;
+            while (!(chunk = nextChunk(orders)).isEmpty()) {
+                Map<Long, List<OrderItem>> lines = linesOf(chunk);
+                for (Object[] order : chunk) {
+                    generator.writeStartObject();
+                    generator.writeNumberField("id", (Long) order[0]);
+                    generator.writeStringField("reference", (String) order[1]);
+                    generator.writeStringField("username", (String) order[2]);
+                    generator.writeStringField("createdAt", order[3] == null ? null : order[3].toString());
+                    generator.writeNumberField("total", Money.toBigDecimal((Long) order[4]));
+                    generator.writeArrayFieldStart("items");
+                    for (OrderItem line : lines.getOrDefault((Long) order[0], Collections.emptyList())) {
+                        generator.writeStartObject();
+                        generator.writeNumberField("itemId", line.getItemId());
+                        generator.writeStringField("name", line.getName());
+                        generator.writeNumberField("quantity", line.getQuantity());
+                        generator.writeNumberField("unitPrice", line.getUnitPrice().toBigDecimal());
+                        generator.writeEndObject();
+                    }
+                    generator.writeEndArray();
+                    generator.writeEndObject();
+                    generator.writeRaw('\n');
+                }
+                generator.flush();
+                written += chunk.size();
+            }
+        }
+        return written;
+    }
+
+    private long writeCsv(OutputStream out, Iterator<Object[]> orders) throws IOException {
+        long written = 0;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write(CSV_HEADER);
+        List<Object[]> chunk;
+        while (!(chunk = nextChunk(orders)).isEmpty()) {
+            Map<Long, List<OrderItem>> lines = linesOf(chunk);
+            for (Object[] order : chunk) {
+                List<OrderItem> orderLines = lines.getOrDefault((Long) order[0], Collections.emptyList());
+                if (orderLines.isEmpty()) {
+                    writeCsvRow(writer, order, null);
+                }
+                for (OrderItem line : orderLines) {
+                    writeCsvRow(writer, order, line);
+                }
+            }
+            writer.flush();
+            written += chunk.size();
+        }
+        writer.flush();
+        return written;
+    }
+
+    private static void writeCsvRow(Writer writer, Object[] order, OrderItem line) throws IOException {
+        writer.write(order[0].toString());
+        writer.write(',');
+        writeCsvField(writer, (String) order[1]);
+        writer.write(',');
+        writeCsvField(writer, (String) order[2]);
+        writer.write(',');
+        writer.write(order[3] == null ? "" : order[3].toString());
+        writer.write(',');
+        writer.write(Money.toBigDecimal((Long) order[4]).toPlainString());
+        if (line == null) {
+            writer.write(",,,,\n");
+            return;
+        }
+        writer.write(',');
+        writer.write(line.getItemId().toString());
+        writer.write(',');
+        writeCsvField(writer, line.getName());
+        writer.write(',');
+        writer.write(Integer.toString(line.getQuantity()));
+        writer.write(',');
+        writer.write(line.getUnitPrice().toString());
+        writer.write('\n');
+    }
+
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quoted = false;
+        for (int i = 0; i < value.length() && !quoted; i++) {
+            char c = value.charAt(i);
+            quoted = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quoted) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private List<Object[]> nextChunk(Iterator<Object[]> orders) {
+        List<Object[]> chunk = new ArrayList<>(chunkSize);
+        while (chunk.size() < chunkSize && orders.hasNext()) {
+            chunk.add(orders.next());
+        }
+        return chunk;
+    }
+
+    private Map<Long, List<OrderItem>> linesOf(List<Object[]> chunk) {
+        List<Long> ids = new ArrayList<>(chunk.size());
+        for (Object[] order : chunk) {
+            ids.add((Long) order[0]);
+        }
+        Map<Long, List<OrderItem>> lines = new HashMap<>();
+        for (Object[] row : orderRepository.findLinesByOrderIdIn(ids)) {
+            lines.computeIfAbsent((Long) row[0], id -> new ArrayList<>()).add((OrderItem) row[1]);
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,383 @@
+package com.example.demo.order;
+
+import com.example.demo.cache.BoundedCache;
+import com.example.demo.cache.BoundedCacheMetrics;
+import com.example.demo.catalog.ItemCache;
+import com.example.demo.model.persistence.Cart;
+import com.example.demo.model.persistence.CartItem;
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.OrderItem;
+import com.example.demo.model.persistence.User;
+import com.example.demo.model.persistence.UserOrder;
+import com.example.demo.model.persistence.repositories.OrderRepository;
+import com.example.demo.model.money.Money;
+import com.example.demo.model.responses.OrderReceipt;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.NonTransientDataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Accepts orders without waiting for the database. An accepted order is
+ * journaled to disk, acknowledged with a reference and queued; worker threads
+ * drain the queue and insert up to {@code order.intake.batch-size} orders per
+ * transaction. At most {@code order.intake.queue-capacity} orders are
+ * waiting or being written at a time, beyond which submissions are refused
+ * with {@link OrderIntakeFullException}. An order the database rejects is
+ * marked failed; other errors put it back on the queue. Each batch updates
+ * the users' {@link OrderSummaries} before it commits. Orders are stored with
+ * their reference under a unique constraint, so replaying the journal after a
+ * crash never inserts an order twice. An order submitted with an idempotency
+ * key that an order still in flight for the same user carries is answered
+ * with that order's receipt, and one refused by the database for a key an
+ * earlier persisted order carries is answered with that earlier order.
+ */
+@Component
+public class OrderIntake {
+    private static final Logger logger = LoggerFactory.getLogger(OrderIntake.class);
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private ItemCache itemCache;
+
+    @Autowired
+    private OrderSummaries orderSummaries;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${order.intake.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${order.intake.workers:2}")
+    private int workerCount;
+
+    @Value("${order.intake.batch-size:100}")
+    private int batchSize;
+
+    @Value("${order.intake.retry-after-seconds:1}")
+    private long retryAfterSeconds;
+
+    @Value("${order.intake.retry-delay-ms:500}")
+    private long retryDelayMillis;
+
+    @Value("${order.intake.journal-dir:log-files/order-journal}")
+    private String journalDirectory;
+
+    @Value("${order.intake.journal-fsync:true}")
+    private boolean journalFsync;
+
+    @Value("${order.intake.journal-max-bytes:67108864}")
+    private long journalMaxBytes;
+
+    @Value("${order.intake.status-cache-size:100000}")
+    private int statusCacheSize;
+
+    @Value("${order.intake.status-ttl-ms:3600000}")
+    private long statusTtlMillis;
+
+    private final BlockingQueue<OrderJournal.Record> queue = new LinkedBlockingQueue<>();
+    private final Map<String, OrderReceipt> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, OrderJournal.Record> inFlightByKey = new ConcurrentHashMap<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private Semaphore capacity;
+    private BoundedCache<String, OrderReceipt> finished;
+    private OrderJournal journal;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() throws IOException {
+        capacity = new Semaphore(queueCapacity);
+        finished = BoundedCacheMetrics.monitor(meterRegistry,
+                new BoundedCache<>("orders.status", statusCacheSize, statusTtlMillis));
+        meterRegistry.gauge("orders.intake.queued", queue, BlockingQueue::size);
+        journal = new OrderJournal(Paths.get(journalDirectory), objectMapper, journalFsync, journalMaxBytes);
+        running = true;
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = new Thread(this::drain, "order-intake-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+        for (OrderJournal.Record record : journal.recover()) {
+            capacity.acquireUninterruptibly();
+            String key = idempotencyKey(record);
+            if (key != null) {
+                inFlightByKey.putIfAbsent(key, record);
+            }
+            enqueue(record);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        running = false;
+        for (Thread worker : workers) {
+            try {
+                worker.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        journal.close();
+    }
+
+    public OrderReceipt accept(User user, Cart cart) {
+        return accept(user, cart, null);
+    }
+
+    public OrderReceipt accept(User user, Cart cart, String idempotencyKey) {
+        Map<Long, String> names = itemCache.findAllById(cart.getItems().stream()
+                .map(CartItem::getItemId)
+                .collect(Collectors.toList())).stream()
+                .collect(Collectors.toMap(Item::getId, Item::getName));
+        List<OrderItem> items = cart.getItems().stream()
+                .map(line -> new OrderItem(line.getItemId(), names.get(line.getItemId()),
+                        line.getQuantity(), line.getUnitPrice()))
+                .collect(Collectors.toList());
+        OrderJournal.Record record = OrderJournal.Record.accepted(UUID.randomUUID().toString(), idempotencyKey,
+                user.getId(), Instant.now(), Money.ofMinorUnits(cart.getTotalMinorUnits()), items);
+        String key = idempotencyKey(record);
+        if (key != null) {
+            OrderJournal.Record earlier = inFlightByKey.putIfAbsent(key, record);
+            if (earlier != null) {
+                return latest(new OrderReceipt(earlier.getReference(), OrderReceipt.Status.ACCEPTED, null,
+                        earlier.getCreatedAt()));
+            }
+        }
+        boolean acquired = false;
+        boolean enqueued = false;
+        try {
+            acquired = capacity.tryAcquire();
+            if (!acquired) {
+                throw new OrderIntakeFullException(retryAfterSeconds);
+            }
+            journal.accepted(record);
+            OrderReceipt receipt = enqueue(record);
+            enqueued = true;
+            return receipt;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (!enqueued) {
+                if (acquired) {
+                    capacity.release();
+                }
+                if (key != null) {
+                    inFlightByKey.remove(key, record);
+                }
+            }
+        }
+    }
+
+    public OrderReceipt status(String reference) {
+        OrderReceipt receipt = inFlight.get(reference);
+        if (receipt == null) {
+            receipt = finished.get(reference);
+        }
+        if (receipt == null) {
+            Long orderId = orderRepository.findIdByReference(reference);
+            if (orderId != null) {
+                receipt = new OrderReceipt(reference, OrderReceipt.Status.PERSISTED, orderId, null);
+            }
+        }
+        return receipt;
+    }
+
+    /**
+     * Returns the latest in-memory state of a previously issued receipt,
+     * without touching the database.
+     */
+    public OrderReceipt latest(OrderReceipt receipt) {
+        OrderReceipt latest = inFlight.get(receipt.getReference());
+        if (latest == null) {
+            latest = finished.get(receipt.getReference());
+        }
+        return latest == null ? receipt : latest;
+    }
+
+    private OrderReceipt enqueue(OrderJournal.Record record) {
+        OrderReceipt receipt = new OrderReceipt(record.getReference(), OrderReceipt.Status.ACCEPTED, null,
+                record.getCreatedAt());
+        inFlight.put(record.getReference(), receipt);
+        queue.add(record);
+        return receipt;
+    }
+
+    private void drain() {
+        List<OrderJournal.Record> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                OrderJournal.Record first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                persist(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                logger.error("Order intake worker failed on a batch of {} orders", batch.size(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void persist(List<OrderJournal.Record> batch) {
+        Map<String, Long> orderIds;
+        try {
+            orderIds = transactionTemplate.execute(status -> insert(batch));
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                OrderJournal.Record record = batch.get(0);
+                Long earlierOrderId = e instanceof NonTransientDataAccessException ? earlierOrderId(record) : null;
+                if (earlierOrderId != null) {
+                    logger.info("Order {} repeats the idempotency key of order id {}", record.getReference(),
+                            earlierOrderId);
+                    persisted(record, earlierOrderId);
+                } else if (e instanceof NonTransientDataAccessException) {
+                    failed(record, e);
+                } else {
+                    retryLater(record, e);
+                }
+                return;
+            }
+            for (OrderJournal.Record record : batch) {
+                persist(Collections.singletonList(record));
+            }
+            return;
+        }
+        for (OrderJournal.Record record : batch) {
+            persisted(record, orderIds.get(record.getReference()));
+        }
+        logger.debug("Persisted {} orders", batch.size());
+    }
+
+    private Map<String, Long> insert(List<OrderJournal.Record> batch) {
+        Map<String, Long> orderIds = new HashMap<>();
+        List<String> references = batch.stream().map(OrderJournal.Record::getReference).collect(Collectors.toList());
+        for (Object[] existing : orderRepository.findIdsByReferenceIn(references)) {
+            orderIds.put((String) existing[0], (Long) existing[1]);
+        }
+        List<UserOrder> orders = new ArrayList<>(batch.size());
+        for (OrderJournal.Record record : batch) {
+            if (orderIds.containsKey(record.getReference())) {
+                continue;
+            }
+            UserOrder order = new UserOrder();
+            order.setReference(record.getReference());
+            order.setIdempotencyKey(record.getIdempotencyKey());
+            order.setUser(entityManager.getReference(User.class, record.getUserId()));
+            order.setItems(new ArrayList<>(record.getItems()));
+            order.setTotal(record.getTotal());
+            order.setCreatedAt(record.getCreatedAt());
+            orders.add(order);
+        }
+        List<UserOrder> saved = orderRepository.saveAll(orders);
+        for (UserOrder order : saved) {
+            orderIds.put(order.getReference(), order.getId());
+        }
+        orderSummaries.record(saved);
+        return orderIds;
+    }
+
+    private Long earlierOrderId(OrderJournal.Record record) {
+        if (record.getIdempotencyKey() == null) {
+            return null;
+        }
+        try {
+            return orderRepository.findIdByUserIdAndIdempotencyKey(record.getUserId(), record.getIdempotencyKey());
+        } catch (RuntimeException e) {
+            logger.warn("Cannot look up earlier order for order {}", record.getReference(), e);
+            return null;
+        }
+    }
+
+    private static String idempotencyKey(OrderJournal.Record record) {
+        return record.getIdempotencyKey() == null ? null : record.getUserId() + "\n" + record.getIdempotencyKey();
+    }
+
+    private void retryLater(OrderJournal.Record record, RuntimeException e) {
+        logger.warn("Cannot persist order {} yet, will retry", record.getReference(), e);
+        queue.add(record);
+        try {
+            Thread.sleep(retryDelayMillis);
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void persisted(OrderJournal.Record record, Long orderId) {
+        finished.put(record.getReference(), new OrderReceipt(record.getReference(), OrderReceipt.Status.PERSISTED,
+                orderId, record.getCreatedAt()));
+        inFlight.remove(record.getReference());
+        forget(record);
+        capacity.release();
+        complete(record.persisted(orderId));
+    }
+
+    private void failed(OrderJournal.Record record, RuntimeException e) {
+        logger.error("Cannot persist order {} for user id {}", record.getReference(), record.getUserId(), e);
+        finished.put(record.getReference(), new OrderReceipt(record.getReference(), OrderReceipt.Status.FAILED,
+                null, record.getCreatedAt()));
+        inFlight.remove(record.getReference());
+        forget(record);
+        capacity.release();
+        complete(record.failed());
+    }
+
+    private void forget(OrderJournal.Record record) {
+        String key = idempotencyKey(record);
+        if (key != null) {
+            inFlightByKey.remove(key, record);
+        }
+    }
+
+    private void complete(OrderJournal.Record outcome) {
+        try {
+            journal.completed(outcome);
+        } catch (IOException e) {
+            logger.error("Cannot journal outcome of order {}", outcome.getReference(), e);
+        }
+    }
+}
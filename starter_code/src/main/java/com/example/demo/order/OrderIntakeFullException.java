@@ -0,0 +1,15 @@
+package com.example.demo.order;
+
+public class OrderIntakeFullException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public OrderIntakeFullException(long retryAfterSeconds) {
+        super("Order intake queue is full");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
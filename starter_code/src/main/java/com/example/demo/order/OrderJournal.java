@@ -0,0 +1,352 @@
+package com.example.demo.order;
+
+import com.example.demo.model.money.Money;
+import com.example.demo.model.persistence.OrderItem;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Append-only NDJSON log of accepted orders and their outcome. Each process
+ * writes its own segment file and holds an exclusive lock on it; segments
+ * left behind by a process that died are replayed by the next one to start.
+ * Accepted records are forced to disk before the order is acknowledged, with
+ * concurrent appends sharing one {@code fsync}; an append that fails is cut
+ * off the segment, and an accepted record that cannot be forced is followed
+ * by a rejection, so a replay never revives an order the client was told
+ * failed. A segment with no pending
+ * orders is deleted on close, or replaced once it grows past its size limit.
+ */
+public class OrderJournal implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(OrderJournal.class);
+
+    private static final String PREFIX = "orders-";
+    private static final String SUFFIX = ".ndjson";
+
+    public enum Type {
+        ACCEPTED, PERSISTED, FAILED, REJECTED
+    }
+
+    private final Path directory;
+    private final ObjectWriter writer;
+    private final ObjectReader reader;
+    private final boolean fsync;
+    private final long maxSegmentBytes;
+    private final Object syncLock = new Object();
+
+    private Path segment;
+    private FileChannel channel;
+    private FileLock lock;
+    private long written;
+    private long synced;
+    private int pending;
+
+    public OrderJournal(Path directory, ObjectMapper objectMapper, boolean fsync, long maxSegmentBytes) throws IOException {
+        this.directory = directory;
+        this.writer = objectMapper.writerFor(Record.class);
+        this.reader = objectMapper.readerFor(Record.class);
+        this.fsync = fsync;
+        this.maxSegmentBytes = maxSegmentBytes;
+        Files.createDirectories(directory);
+        openSegment();
+    }
+
+    /**
+     * Moves the pending orders of abandoned segments into this journal's
+     * segment, deletes those segments and returns the orders.
+     */
+    public synchronized List<Record> recover() throws IOException {
+        Map<String, Record> recovered = new LinkedHashMap<>();
+        List<Path> abandoned = new ArrayList<>();
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path other : segments) {
+                if (other.equals(segment)) {
+                    continue;
+                }
+                try (FileChannel otherChannel = FileChannel.open(other, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    FileLock otherLock;
+                    try {
+                        otherLock = otherChannel.tryLock();
+                    } catch (OverlappingFileLockException e) {
+                        otherLock = null;
+                    }
+                    if (otherLock == null) {
+                        continue;
+                    }
+                    readPending(other, otherChannel, recovered);
+                    abandoned.add(other);
+                }
+            }
+        }
+        for (Record record : recovered.values()) {
+            write(record);
+            pending++;
+        }
+        force();
+        for (Path other : abandoned) {
+            Files.deleteIfExists(other);
+        }
+        if (!recovered.isEmpty()) {
+            logger.info("Recovered {} pending orders from {} journal segments", recovered.size(), abandoned.size());
+        }
+        return new ArrayList<>(recovered.values());
+    }
+
+    public void accepted(Record record) throws IOException {
+        long end;
+        synchronized (this) {
+            long start = written;
+            try {
+                end = write(record);
+            } catch (IOException e) {
+                truncate(start, e);
+                throw e;
+            }
+            pending++;
+        }
+        if (fsync) {
+            try {
+                sync(end);
+            } catch (IOException e) {
+                reject(record, e);
+                throw e;
+            }
+        }
+    }
+
+    public synchronized void completed(Record record) throws IOException {
+        write(record);
+        pending--;
+        if (pending == 0 && written >= maxSegmentBytes) {
+            Path previous = segment;
+            closeSegment();
+            Files.deleteIfExists(previous);
+            openSegment();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        Path previous = segment;
+        force();
+        closeSegment();
+        if (pending == 0) {
+            Files.deleteIfExists(previous);
+        } else {
+            logger.warn("Closing order journal with {} pending orders left in {}", pending, previous);
+        }
+    }
+
+    private void readPending(Path path, FileChannel source, Map<String, Record> recovered) throws IOException {
+        BufferedReader lines = new BufferedReader(Channels.newReader(source, StandardCharsets.UTF_8.newDecoder(), -1));
+        String line;
+        while ((line = lines.readLine()) != null) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            Record record;
+            try {
+                record = reader.readValue(line);
+            } catch (IOException e) {
+                logger.warn("Skipping unreadable order journal line in {}", path);
+                continue;
+            }
+            if (record.type == Type.ACCEPTED) {
+                recovered.put(record.reference, record);
+            } else {
+                recovered.remove(record.reference);
+            }
+        }
+    }
+
+    private long write(Record record) throws IOException {
+        byte[] json = writer.writeValueAsBytes(record);
+        ByteBuffer buffer = ByteBuffer.allocate(json.length + 1);
+        buffer.put(json).put((byte) '\n').flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        written += json.length + 1;
+        return written;
+    }
+
+    private void truncate(long start, IOException cause) {
+        try {
+            channel.truncate(start);
+            written = start;
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    private void reject(Record record, IOException cause) {
+        try {
+            long end;
+            synchronized (this) {
+                end = write(record.rejected());
+                pending--;
+            }
+            sync(end);
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+            logger.error("Cannot journal rejection of order {}", record.getReference(), e);
+        }
+    }
+
+    private void sync(long end) throws IOException {
+        synchronized (syncLock) {
+            long target;
+            FileChannel current;
+            synchronized (this) {
+                if (synced >= end) {
+                    return;
+                }
+                target = written;
+                current = channel;
+            }
+            current.force(false);
+            synchronized (this) {
+                if (current == channel && synced < target) {
+                    synced = target;
+                }
+            }
+        }
+    }
+
+    private void force() throws IOException {
+        channel.force(false);
+        synced = written;
+    }
+
+    private void openSegment() throws IOException {
+        segment = directory.resolve(PREFIX + System.currentTimeMillis() + "-" + UUID.randomUUID() + SUFFIX);
+        channel = FileChannel.open(segment, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        lock = channel.lock();
+        written = 0;
+        synced = 0;
+    }
+
+    private void closeSegment() throws IOException {
+        lock.release();
+        channel.close();
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Record {
+
+        @JsonProperty
+        private Type type;
+
+        @JsonProperty
+        private String reference;
+
+        @JsonProperty
+        private Long userId;
+
+        @JsonProperty
+        private Instant createdAt;
+
+        @JsonProperty
+        private Money total;
+
+        @JsonProperty
+        private List<OrderItem> items;
+
+        @JsonProperty
+        private Long orderId;
+
+        @JsonProperty
+        private String idempotencyKey;
+
+        public static Record accepted(String reference, String idempotencyKey, long userId, Instant createdAt,
+                                      Money total, List<OrderItem> items) {
+            Record record = new Record();
+            record.type = Type.ACCEPTED;
+            record.reference = reference;
+            record.idempotencyKey = idempotencyKey;
+            record.userId = userId;
+            record.createdAt = createdAt;
+            record.total = total;
+            record.items = items;
+            return record;
+        }
+
+        public Record persisted(long orderId) {
+            Record record = new Record();
+            record.type = Type.PERSISTED;
+            record.reference = reference;
+            record.orderId = orderId;
+            return record;
+        }
+
+        public Record failed() {
+            Record record = new Record();
+            record.type = Type.FAILED;
+            record.reference = reference;
+            return record;
+        }
+
+        public Record rejected() {
+            Record record = new Record();
+            record.type = Type.REJECTED;
+            record.reference = reference;
+            return record;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public String getReference() {
+            return reference;
+        }
+
+        public Long getUserId() {
+            return userId;
+        }
+
+        public Instant getCreatedAt() {
+            return createdAt;
+        }
+
+        public Money getTotal() {
+            return total;
+        }
+
+        public List<OrderItem> getItems() {
+            return items;
+        }
+
+        public Long getOrderId() {
+            return orderId;
+        }
+
+        public String getIdempotencyKey() {
+            return idempotencyKey;
+        }
+    }
+}
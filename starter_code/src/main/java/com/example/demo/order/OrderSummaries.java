@@ -0,0 +1,62 @@
+package com.example.demo.order;
+
+import com.example.demo.model.persistence.User;
+import com.example.demo.model.persistence.UserOrder;
+import com.example.demo.model.persistence.UserOrderSummary;
+import com.example.demo.model.persistence.repositories.UserOrderSummaryRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Folds newly inserted orders into their users' {@link UserOrderSummary}
+ * rows inside the inserting transaction. Summary rows are locked in user id
+ * order so concurrent intake workers cannot deadlock; a missing row is created
+ * under a lock on the user row.
+ */
+@Component
+public class OrderSummaries {
+
+    @Autowired
+    private UserOrderSummaryRepository summaryRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(List<UserOrder> orders) {
+        Map<Long, List<UserOrder>> byUser = new TreeMap<>();
+        for (UserOrder order : orders) {
+            byUser.computeIfAbsent(order.getUser().getId(), id -> new ArrayList<>()).add(order);
+        }
+        byUser.forEach((userId, userOrders) -> {
+            UserOrderSummary summary = lockSummary(userId);
+            for (UserOrder order : userOrders) {
+                summary.record(order);
+            }
+        });
+    }
+
+    private UserOrderSummary lockSummary(Long userId) {
+        UserOrderSummary summary = summaryRepository.findForUpdate(userId);
+        if (summary != null) {
+            return summary;
+        }
+        entityManager.find(User.class, userId, LockModeType.PESSIMISTIC_WRITE);
+        summary = summaryRepository.findForUpdate(userId);
+        if (summary == null) {
+            summary = new UserOrderSummary(userId);
+            entityManager.persist(summary);
+        }
+        return summary;
+    }
+}
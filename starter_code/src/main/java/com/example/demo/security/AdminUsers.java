@@ -0,0 +1,46 @@
+package com.example.demo.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Usernames listed in {@code security.admin-usernames} are granted
+ * {@code ROLE_ADMIN} when their token is verified; everyone else, including
+ * every self-registered user, gets no authorities. The list is empty by
+ * default, which leaves the admin-only endpoints closed.
+ */
+@Component
+public class AdminUsers {
+
+    public static final String ROLE = "ADMIN";
+
+    private static final List<GrantedAuthority> ADMIN_AUTHORITIES =
+            Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + ROLE));
+
+    private final Set<String> usernames = new HashSet<>();
+
+    public AdminUsers(@Value("${security.admin-usernames:}") String[] usernames) {
+        for (String username : usernames) {
+            if (!username.trim().isEmpty()) {
+                this.usernames.add(username.trim());
+            }
+        }
+    }
+
+    public Collection<GrantedAuthority> authoritiesOf(String username) {
+        return usernames.contains(username) ? ADMIN_AUTHORITIES : Collections.emptyList();
+    }
+
+    public static boolean isAdmin(Authentication authentication) {
+        return authentication != null && authentication.getAuthorities().containsAll(ADMIN_AUTHORITIES);
+    }
+}
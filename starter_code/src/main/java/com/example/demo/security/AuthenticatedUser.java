@@ -0,0 +1,25 @@
+package com.example.demo.security;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Collection;
+
+/**
+ * Login principal that also carries the user's id, so issued tokens can
+ * name the user by primary key.
+ */
+public class AuthenticatedUser extends User {
+
+    private final long userId;
+
+    public AuthenticatedUser(long userId, String username, String password,
+                             Collection<? extends GrantedAuthority> authorities) {
+        super(username, password, authorities);
+        this.userId = userId;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.demo.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * BCrypt on a dedicated pool of {@code security.bcrypt.threads} threads with
+ * room for {@code security.bcrypt.queue-capacity} waiting hashes, so signup
+ * and login storms cannot occupy more CPU than the pool. A hash that finds
+ * the queue full fails at once with {@link PasswordHashingBusyException}.
+ * Unless {@code security.bcrypt.strength} is set, the cost is calibrated at
+ * startup to the highest one whose hash takes at most
+ * {@code security.bcrypt.target-ms}. Stored hashes of another cost are
+ * reported for upgrade while the pool has no backlog.
+ */
+@Component
+public class BoundedBCryptPasswordEncoder implements PasswordEncoder {
+    private static final Logger logger = LoggerFactory.getLogger(BoundedBCryptPasswordEncoder.class);
+
+    private static final Pattern BCRYPT_PATTERN = Pattern.compile("\\A\\$2[aby]?\\$(\\d\\d)\\$[./0-9A-Za-z]{53}");
+
+    private final int strength;
+    private final BCryptPasswordEncoder delegate;
+    private final ThreadPoolExecutor executor;
+    private final long retryAfterSeconds;
+
+    @Autowired
+    public BoundedBCryptPasswordEncoder(@Value("${security.bcrypt.strength:0}") int strength,
+                                        @Value("${security.bcrypt.target-ms:100}") long targetMillis,
+                                        @Value("${security.bcrypt.min-strength:10}") int minStrength,
+                                        @Value("${security.bcrypt.max-strength:14}") int maxStrength,
+                                        @Value("${security.bcrypt.threads:0}") int threads,
+                                        @Value("${security.bcrypt.queue-capacity:64}") int queueCapacity,
+                                        @Value("${security.bcrypt.retry-after-seconds:1}") long retryAfterSeconds) {
+        this(strength > 0 ? strength : calibrate(targetMillis, minStrength, maxStrength),
+                threads > 0 ? threads : Runtime.getRuntime().availableProcessors(),
+                queueCapacity, retryAfterSeconds);
+    }
+
+    public BoundedBCryptPasswordEncoder(int strength, int threads, int queueCapacity, long retryAfterSeconds) {
+        this.strength = strength;
+        this.delegate = new BCryptPasswordEncoder(strength);
+        this.retryAfterSeconds = retryAfterSeconds;
+        AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "bcrypt-" + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        logger.info("Hashing passwords with BCrypt cost {} on {} threads", strength, threads);
+    }
+
+    /**
+     * Returns the highest cost in {@code [minStrength, maxStrength]} whose
+     * hash is expected to take at most {@code targetMillis}, measured once at
+     * {@code minStrength} and doubled per step.
+     */
+    public static int calibrate(long targetMillis, int minStrength, int maxStrength) {
+        new BCryptPasswordEncoder(4).encode("calibration");
+        BCryptPasswordEncoder probe = new BCryptPasswordEncoder(minStrength);
+        long started = System.nanoTime();
+        probe.encode("calibration");
+        long estimate = System.nanoTime() - started;
+        long target = TimeUnit.MILLISECONDS.toNanos(targetMillis);
+        int calibrated = minStrength;
+        while (calibrated < maxStrength && estimate * 2 <= target) {
+            calibrated++;
+            estimate *= 2;
+        }
+        logger.info("Calibrated BCrypt cost {} for a target of {} ms", calibrated, targetMillis);
+        return calibrated;
+    }
+
+    public int getStrength() {
+        return strength;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return run(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return run(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null) {
+            return false;
+        }
+        Matcher matcher = BCRYPT_PATTERN.matcher(encodedPassword);
+        return matcher.find() && Integer.parseInt(matcher.group(1)) != strength && executor.getQueue().isEmpty();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private <T> T run(Callable<T> hash) {
+        Future<T> result;
+        try {
+            result = executor.submit(hash);
+        } catch (RejectedExecutionException e) {
+            throw new PasswordHashingBusyException(retryAfterSeconds);
+        }
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing a password", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.demo.security;
+
+public class InvalidLoginRequestException extends RuntimeException {
+
+    public InvalidLoginRequestException(String message) {
+        super(message);
+    }
+}
@@ -1,12 +1,14 @@
 package com.example.demo.security;
 
-import com.auth0.jwt.JWT;
-import com.example.demo.model.persistence.User;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.authentication.InternalAuthenticationServiceException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
 import javax.servlet.FilterChain;
@@ -14,34 +16,64 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Date;
-
-import static com.auth0.jwt.algorithms.Algorithm.HMAC512;
+import java.util.Collections;
 
 public class JWTAuthenticationFilter extends UsernamePasswordAuthenticationFilter {
 
     private final AuthenticationManager authenticationManager;
+    private final JwtTokens jwtTokens;
+    private final LoginThrottle loginThrottle;
+    private final LoginCredentialsReader credentialsReader;
 
-    public JWTAuthenticationFilter(AuthenticationManager authenticationManager) {
+    public JWTAuthenticationFilter(AuthenticationManager authenticationManager, JwtTokens jwtTokens,
+                                   LoginThrottle loginThrottle, LoginCredentialsReader credentialsReader) {
         this.authenticationManager = authenticationManager;
+        this.jwtTokens = jwtTokens;
+        this.loginThrottle = loginThrottle;
+        this.credentialsReader = credentialsReader;
     }
 
     @Override
     public Authentication attemptAuthentication(HttpServletRequest req,
                                                 HttpServletResponse res) throws AuthenticationException {
         try {
-            User credentials = new ObjectMapper()
-                    .readValue(req.getInputStream(), User.class);
+            LoginCredentials credentials = credentialsReader.read(req);
+
+            long retryAfterSeconds = loginThrottle.acquire(
+                    LoginThrottle.Endpoint.LOGIN, credentials.getUsername(), req.getRemoteAddr());
+            if (retryAfterSeconds > 0) {
+                res.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+                res.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+                return null;
+            }
 
             return authenticationManager.authenticate(
                     new UsernamePasswordAuthenticationToken(
                             credentials.getUsername(),
                             credentials.getPassword(),
-                            new ArrayList<>()));
+                            Collections.emptyList()));
+        } catch (PasswordHashingBusyException e) {
+            throw new InternalAuthenticationServiceException(e.getMessage(), e);
+        } catch (InvalidLoginRequestException e) {
+            res.setStatus(HttpStatus.BAD_REQUEST.value());
+            return null;
         } catch (IOException e) {
-            throw new RuntimeException(e);
+            throw new AuthenticationServiceException("Cannot read login request", e);
+        }
+    }
+
+    @Override
+    protected void unsuccessfulAuthentication(HttpServletRequest req,
+                                              HttpServletResponse res,
+                                              AuthenticationException failed) throws IOException, ServletException {
+        if (failed.getCause() instanceof PasswordHashingBusyException) {
+            SecurityContextHolder.clearContext();
+            res.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            res.setHeader(HttpHeaders.RETRY_AFTER,
+                    String.valueOf(((PasswordHashingBusyException) failed.getCause()).getRetryAfterSeconds()));
+            return;
         }
+        super.unsuccessfulAuthentication(req, res, failed);
     }
 
     @Override
@@ -50,10 +82,8 @@ public class JWTAuthenticationFilter extends UsernamePasswordAuthenticationFilte
                                             FilterChain chain,
                                             Authentication auth) throws IOException, ServletException {
 
-        String token = JWT.create()
-                .withSubject(((org.springframework.security.core.userdetails.User) auth.getPrincipal()).getUsername())
-                .withExpiresAt(new Date(System.currentTimeMillis() + SecurityConstants.EXPIRATION_TIME))
-                .sign(HMAC512(SecurityConstants.SECRET.getBytes()));
+        AuthenticatedUser user = (AuthenticatedUser) auth.getPrincipal();
+        String token = jwtTokens.issue(user.getUsername(), user.getUserId());
         res.addHeader(SecurityConstants.HEADER_STRING, SecurityConstants.TOKEN_PREFIX + token);
     }
 }
\ No newline at end of file
@@ -1,26 +1,28 @@
 package com.example.demo.security;
 
-import com.auth0.jwt.JWT;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
-import org.springframework.stereotype.Component;
 
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.ArrayList;
 
-import static com.auth0.jwt.algorithms.Algorithm.HMAC512;
-
-@Component
 public class JWTAuthenticationVerificationFilter extends BasicAuthenticationFilter {
 
-    public JWTAuthenticationVerificationFilter(AuthenticationManager authManager) {
+    private final JwtTokens jwtTokens;
+    private final RevokedTokens revokedTokens;
+    private final AdminUsers adminUsers;
+
+    public JWTAuthenticationVerificationFilter(AuthenticationManager authManager, JwtTokens jwtTokens,
+                                               RevokedTokens revokedTokens, AdminUsers adminUsers) {
         super(authManager);
+        this.jwtTokens = jwtTokens;
+        this.revokedTokens = revokedTokens;
+        this.adminUsers = adminUsers;
     }
 
     @Override
@@ -33,22 +35,20 @@ public class JWTAuthenticationVerificationFilter extends BasicAuthenticationFilt
             return;
         }
 
-        UsernamePasswordAuthenticationToken authentication = getAuthentication(req);
+        UsernamePasswordAuthenticationToken authentication = getAuthentication(header);
 
         SecurityContextHolder.getContext().setAuthentication(authentication);
         chain.doFilter(req, res);
     }
 
-    private UsernamePasswordAuthenticationToken getAuthentication(HttpServletRequest req) {
-        String token = req.getHeader(SecurityConstants.HEADER_STRING);
-        if (token != null) {
-            String user = JWT.require(HMAC512(SecurityConstants.SECRET.getBytes())).build()
-                    .verify(token.replace(SecurityConstants.TOKEN_PREFIX, ""))
-                    .getSubject();
-            if (user != null) {
-                return new UsernamePasswordAuthenticationToken(user, null, new ArrayList<>());
-            }
-            return null;
+    private UsernamePasswordAuthenticationToken getAuthentication(String header) {
+        JwtTokens.VerifiedToken token = jwtTokens.verify(header.substring(SecurityConstants.TOKEN_PREFIX.length()));
+        if (token != null && !revokedTokens.isRevoked(token.getId())) {
+            UsernamePasswordAuthenticationToken authentication =
+                    new UsernamePasswordAuthenticationToken(token.getUsername(), null,
+                            adminUsers.authoritiesOf(token.getUsername()));
+            authentication.setDetails(token);
+            return authentication;
         }
         return null;
     }
@@ -0,0 +1,128 @@
+package com.example.demo.security;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.example.demo.cache.BoundedCache;
+import com.example.demo.cache.BoundedCacheMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.UUID;
+import java.util.function.LongSupplier;
+
+/**
+ * Issues and verifies the HMAC512 tokens of both authentication filters with
+ * one shared algorithm and verifier, which are thread-safe. Verified tokens
+ * are cached with their principal and expiry, so a token seen before costs
+ * one hash lookup instead of decoding and checking the signature again; a
+ * cached token is still refused once it expires.
+ */
+@Component
+public class JwtTokens {
+
+    private static final String USER_ID_CLAIM = "uid";
+
+    private final Algorithm algorithm;
+    private final JWTVerifier verifier;
+    private final BoundedCache<String, VerifiedToken> verified;
+    private final LongSupplier clock;
+
+    @Autowired
+    public JwtTokens(MeterRegistry meterRegistry,
+                     @Value("${security.token-cache.size:10000}") int maximumSize,
+                     @Value("${security.token-cache.ttl-ms:600000}") long ttlMillis) {
+        this(maximumSize, ttlMillis, System::currentTimeMillis);
+        BoundedCacheMetrics.monitor(meterRegistry, verified);
+    }
+
+    public JwtTokens(int maximumSize, long ttlMillis, LongSupplier clock) {
+        this.algorithm = Algorithm.HMAC512(SecurityConstants.SECRET.getBytes(StandardCharsets.UTF_8));
+        this.verifier = JWT.require(algorithm).build();
+        this.verified = new BoundedCache<>("security.tokens", maximumSize, ttlMillis);
+        this.clock = clock;
+    }
+
+    public String issue(String username, long userId) {
+        return JWT.create()
+                .withSubject(username)
+                .withClaim(USER_ID_CLAIM, userId)
+                .withJWTId(UUID.randomUUID().toString())
+                .withExpiresAt(new Date(clock.getAsLong() + SecurityConstants.EXPIRATION_TIME))
+                .sign(algorithm);
+    }
+
+    /**
+     * Returns the verified token, or {@code null} if the token is malformed,
+     * forged, expired or has no subject.
+     */
+    public VerifiedToken verify(String token) {
+        VerifiedToken cached = verified.get(token);
+        if (cached != null) {
+            if (cached.expiresAt > clock.getAsLong()) {
+                return cached;
+            }
+            verified.invalidate(token);
+            return null;
+        }
+        DecodedJWT decoded;
+        try {
+            decoded = verifier.verify(token);
+        } catch (JWTVerificationException e) {
+            return null;
+        }
+        if (decoded.getSubject() == null) {
+            return null;
+        }
+        VerifiedToken verifiedToken = new VerifiedToken(decoded.getSubject(), decoded.getClaim(USER_ID_CLAIM).asLong(),
+                decoded.getId(),
+                decoded.getExpiresAt() == null ? Long.MAX_VALUE : decoded.getExpiresAt().getTime());
+        verified.put(token, verifiedToken);
+        return verifiedToken;
+    }
+
+    public static class VerifiedToken {
+
+        private final String username;
+        private final Long userId;
+        private final String id;
+        private final long expiresAt;
+
+        VerifiedToken(String username, Long userId, String id, long expiresAt) {
+            this.username = username;
+            this.userId = userId;
+            this.id = id;
+            this.expiresAt = expiresAt;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        /**
+         * Returns the {@code uid} claim, which tokens issued before it was
+         * introduced do not carry.
+         */
+        public Long getUserId() {
+            return userId;
+        }
+
+        /**
+         * Returns the {@code jti} claim, which tokens issued before it was
+         * introduced do not carry.
+         */
+        public String getId() {
+            return id;
+        }
+
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.demo.security;
+
+/**
+ * Username and password of a login attempt, as read from its body by
+ * {@link LoginCredentialsReader}.
+ */
+public final class LoginCredentials {
+
+    private final String username;
+    private final String password;
+
+    public LoginCredentials(String username, String password) {
+        this.username = username;
+        this.password = password;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.demo.security;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the {@code {"username": ..., "password": ...}} body of a login
+ * request with the application's shared {@link JsonFactory}, token by token,
+ * into {@link LoginCredentials}; no mapper or entity is built per attempt.
+ * Bodies longer than {@code security.login.max-body-bytes}, either declared
+ * or actually sent, and fields longer than
+ * {@code security.login.max-field-length} characters are refused along with
+ * malformed JSON, so a bad request costs at most one bounded read.
+ */
+@Component
+public class LoginCredentialsReader {
+
+    private final JsonFactory jsonFactory;
+    private final int maxBodyBytes;
+    private final int maxFieldLength;
+
+    public LoginCredentialsReader(ObjectMapper objectMapper,
+                                  @Value("${security.login.max-body-bytes:4096}") int maxBodyBytes,
+                                  @Value("${security.login.max-field-length:256}") int maxFieldLength) {
+        this.jsonFactory = objectMapper.getFactory();
+        this.maxBodyBytes = maxBodyBytes;
+        this.maxFieldLength = maxFieldLength;
+    }
+
+    /**
+     * Reads the credentials of {@code request}, throwing
+     * {@link InvalidLoginRequestException} if its body is too long, malformed
+     * or lacks either field.
+     */
+    public LoginCredentials read(HttpServletRequest request) throws IOException {
+        if (request.getContentLengthLong() > maxBodyBytes) {
+            throw new InvalidLoginRequestException("login body exceeds " + maxBodyBytes + " bytes");
+        }
+        String username = null;
+        String password = null;
+        try (JsonParser parser = jsonFactory.createParser(new LimitedInputStream(request.getInputStream(), maxBodyBytes))) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new InvalidLoginRequestException("expected a JSON object");
+            }
+            String field;
+            while ((field = parser.nextFieldName()) != null) {
+                JsonToken value = parser.nextToken();
+                if ("username".equals(field)) {
+                    username = text(parser, value, field);
+                } else if ("password".equals(field)) {
+                    password = text(parser, value, field);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (parser.currentToken() != JsonToken.END_OBJECT || parser.nextToken() != null) {
+                throw new InvalidLoginRequestException("malformed JSON");
+            }
+        } catch (JsonProcessingException e) {
+            throw new InvalidLoginRequestException("malformed JSON");
+        }
+        if (username == null || password == null) {
+            throw new InvalidLoginRequestException("username and password are required");
+        }
+        return new LoginCredentials(username, password);
+    }
+
+    private String text(JsonParser parser, JsonToken value, String field) throws IOException {
+        if (value != JsonToken.VALUE_STRING) {
+            throw new InvalidLoginRequestException(field + " must be a string");
+        }
+        if (parser.getTextLength() > maxFieldLength) {
+            throw new InvalidLoginRequestException(field + " exceeds " + maxFieldLength + " characters");
+        }
+        return parser.getText();
+    }
+
+    private static final class LimitedInputStream extends FilterInputStream {
+        private final long limit;
+        private long read;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        private void count(int n) {
+            read += n;
+            if (read > limit) {
+                throw new InvalidLoginRequestException("login body exceeds " + limit + " bytes");
+            }
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.example.demo.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Token-bucket throttle in front of the two endpoints that hash passwords,
+ * login and sign-up. Every attempt takes one token from the bucket of its
+ * client address and one from the bucket of its username, before any
+ * hashing; an attempt that finds either bucket empty is refused with the
+ * time until a token is available. Each bucket is a single {@link AtomicLong}
+ * packing its last refill time and remaining tokens, updated by
+ * compare-and-set, so concurrent attempts never block each other. Buckets are
+ * held in concurrent hash maps, created with {@code computeIfAbsent}, and a
+ * sweep every {@code security.throttle.sweep-interval-ms} drops the buckets
+ * that have refilled, since a bucket recreated later starts full anyway.
+ * When a map reaches {@code security.throttle.table-size} it is swept at
+ * once and, if still that large, trimmed down to nine tenths of the limit,
+ * dropping the fullest buckets first and, among equally full ones, those
+ * refilled longest ago, so a bucket is only dropped once every fuller bucket
+ * is gone and a throttled key is the last to be forgotten.
+ */
+@Component
+public class LoginThrottle {
+
+    public enum Endpoint {
+        LOGIN, SIGNUP
+    }
+
+    private final TokenBuckets byUsername;
+    private final TokenBuckets byAddress;
+    private final LongSupplier clock;
+    private final long started;
+    private final Counter[] admitted = new Counter[Endpoint.values().length];
+    private final Counter[] rejected = new Counter[Endpoint.values().length];
+
+    @Autowired
+    public LoginThrottle(MeterRegistry meterRegistry,
+                         @Value("${security.throttle.username.capacity:10}") int usernameCapacity,
+                         @Value("${security.throttle.username.refill-per-second:0.2}") double usernameRefillPerSecond,
+                         @Value("${security.throttle.address.capacity:100}") int addressCapacity,
+                         @Value("${security.throttle.address.refill-per-second:10}") double addressRefillPerSecond,
+                         @Value("${security.throttle.table-size:100000}") int tableSize) {
+        this(meterRegistry, usernameCapacity, usernameRefillPerSecond, addressCapacity, addressRefillPerSecond,
+                tableSize, () -> TimeUnit.NANOSECONDS.toMillis(System.nanoTime()));
+    }
+
+    public LoginThrottle(MeterRegistry meterRegistry,
+                         int usernameCapacity, double usernameRefillPerSecond,
+                         int addressCapacity, double addressRefillPerSecond,
+                         int tableSize, LongSupplier clock) {
+        this.byUsername = new TokenBuckets(usernameCapacity, usernameRefillPerSecond, tableSize);
+        this.byAddress = new TokenBuckets(addressCapacity, addressRefillPerSecond, tableSize);
+        meterRegistry.gaugeMapSize("security.throttle.buckets", Tags.of("key", "username"), byUsername.buckets);
+        meterRegistry.gaugeMapSize("security.throttle.buckets", Tags.of("key", "address"), byAddress.buckets);
+        this.clock = clock;
+        this.started = clock.getAsLong();
+        for (Endpoint endpoint : Endpoint.values()) {
+            String tag = endpoint.name().toLowerCase(Locale.ROOT);
+            admitted[endpoint.ordinal()] = meterRegistry.counter("security.login.attempts",
+                    "endpoint", tag, "result", "admitted");
+            rejected[endpoint.ordinal()] = meterRegistry.counter("security.login.attempts",
+                    "endpoint", tag, "result", "rejected");
+        }
+    }
+
+    /**
+     * Takes a token for an attempt from {@code address} on behalf of
+     * {@code username}, either of which may be null, and returns 0 if the
+     * attempt is admitted or else the seconds to wait before retrying.
+     */
+    public long acquire(Endpoint endpoint, String username, String address) {
+        long now = now();
+        long waitMillis = address == null ? 0 : byAddress.acquire(address, now);
+        if (waitMillis == 0 && username != null) {
+            waitMillis = byUsername.acquire(username, now);
+        }
+        if (waitMillis == 0) {
+            admitted[endpoint.ordinal()].increment();
+            return 0;
+        }
+        rejected[endpoint.ordinal()].increment();
+        return Math.max(1, TimeUnit.MILLISECONDS.toSeconds(waitMillis + 999));
+    }
+
+    @Scheduled(fixedDelayString = "${security.throttle.sweep-interval-ms:60000}")
+    public void sweep() {
+        long now = now();
+        byAddress.sweep(now);
+        byUsername.sweep(now);
+    }
+
+    private long now() {
+        return Math.max(0, clock.getAsLong() - started);
+    }
+
+    /**
+     * Buckets of one key space. A bucket's state holds the time of its last
+     * refill, in milliseconds since the throttle started, in the high 44 bits
+     * and its tokens, in thousandths, in the low 20 bits, which caps the
+     * capacity at 1000 tokens. A swept bucket is first set to {@link #SWEPT},
+     * so an attempt still holding it looks the key up again instead of taking
+     * a token from a bucket no longer in the map.
+     */
+    private static final class TokenBuckets {
+        private static final int TOKEN_BITS = 20;
+        private static final long TOKEN_MASK = (1L << TOKEN_BITS) - 1;
+        private static final long ONE_TOKEN = 1000;
+        private static final long SWEPT = -1;
+
+        private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+        private final AtomicBoolean sweeping = new AtomicBoolean();
+        private final long capacity;
+        private final double refillPerMilli;
+        private final int maxBuckets;
+        private final int trimmedBuckets;
+
+        TokenBuckets(int capacity, double refillPerSecond, int maxBuckets) {
+            if (capacity < 1 || capacity * ONE_TOKEN > TOKEN_MASK) {
+                throw new IllegalArgumentException("Bucket capacity must be between 1 and "
+                        + TOKEN_MASK / ONE_TOKEN + ": " + capacity);
+            }
+            if (!(refillPerSecond > 0)) {
+                throw new IllegalArgumentException("Refill rate must be positive: " + refillPerSecond);
+            }
+            this.capacity = capacity * ONE_TOKEN;
+            // thousandths of a token per millisecond equal tokens per second
+            this.refillPerMilli = refillPerSecond;
+            this.maxBuckets = maxBuckets;
+            this.trimmedBuckets = maxBuckets - maxBuckets / 10;
+        }
+
+        /** Returns 0 if a token was taken, else the milliseconds until one is available. */
+        long acquire(String key, long now) {
+            AtomicLong bucket = bucket(key, now);
+            while (true) {
+                long state = bucket.get();
+                if (state == SWEPT) {
+                    bucket = bucket(key, now);
+                    continue;
+                }
+                long refilledAt = state >>> TOKEN_BITS;
+                long tokens = tokens(state, now);
+                if (tokens < ONE_TOKEN) {
+                    return Math.max(1, (long) Math.ceil((ONE_TOKEN - tokens) / refillPerMilli));
+                }
+                long next = Math.max(now, refilledAt) << TOKEN_BITS | (tokens - ONE_TOKEN);
+                if (bucket.compareAndSet(state, next)) {
+                    return 0;
+                }
+            }
+        }
+
+        /** Drops the buckets that have refilled and trims the map if it is still at its limit. */
+        void sweep(long now) {
+            if (!sweeping.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                for (Iterator<Map.Entry<String, AtomicLong>> entries = buckets.entrySet().iterator(); entries.hasNext(); ) {
+                    Map.Entry<String, AtomicLong> entry = entries.next();
+                    long state = entry.getValue().get();
+                    if (state != SWEPT && tokens(state, now) >= capacity) {
+                        remove(entry.getKey(), entry.getValue(), state);
+                    }
+                }
+                if (buckets.size() < maxBuckets) {
+                    return;
+                }
+                trim(now);
+            } finally {
+                sweeping.set(false);
+            }
+        }
+
+        /**
+         * Drops the fullest buckets, oldest refill first among equals, until
+         * the map is down to {@link #trimmedBuckets}. A bucket that takes a
+         * token meanwhile has changed state and is kept.
+         */
+        private void trim(long now) {
+            List<Candidate> candidates = new ArrayList<>(buckets.size());
+            for (Map.Entry<String, AtomicLong> entry : buckets.entrySet()) {
+                long state = entry.getValue().get();
+                if (state != SWEPT) {
+                    candidates.add(new Candidate(entry.getKey(), entry.getValue(), state, tokens(state, now)));
+                }
+            }
+            candidates.sort(Comparator.comparingLong((Candidate candidate) -> -candidate.tokens)
+                    .thenComparingLong(candidate -> candidate.state >>> TOKEN_BITS));
+            for (Iterator<Candidate> iterator = candidates.iterator();
+                 buckets.size() > trimmedBuckets && iterator.hasNext(); ) {
+                Candidate candidate = iterator.next();
+                remove(candidate.key, candidate.bucket, candidate.state);
+            }
+        }
+
+        private AtomicLong bucket(String key, long now) {
+            AtomicLong bucket = buckets.get(key);
+            if (bucket == null || bucket.get() == SWEPT) {
+                if (bucket != null) {
+                    buckets.remove(key, bucket);
+                }
+                if (buckets.size() >= maxBuckets) {
+                    sweep(now);
+                }
+                bucket = buckets.computeIfAbsent(key, absent -> new AtomicLong(now << TOKEN_BITS | capacity));
+            }
+            return bucket;
+        }
+
+        private void remove(String key, AtomicLong bucket, long state) {
+            if (state != SWEPT && bucket.compareAndSet(state, SWEPT)) {
+                buckets.remove(key, bucket);
+            }
+        }
+
+        private long tokens(long state, long now) {
+            long elapsed = Math.max(0, now - (state >>> TOKEN_BITS));
+            return Math.min(capacity, (state & TOKEN_MASK) + (long) (elapsed * refillPerMilli));
+        }
+    }
+
+    private static final class Candidate {
+        final String key;
+        final AtomicLong bucket;
+        final long state;
+        final long tokens;
+
+        Candidate(String key, AtomicLong bucket, long state, long tokens) {
+            this.key = key;
+            this.bucket = bucket;
+            this.state = state;
+            this.tokens = tokens;
+        }
+    }
+}
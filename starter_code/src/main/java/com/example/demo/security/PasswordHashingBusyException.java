@@ -0,0 +1,15 @@
+package com.example.demo.security;
+
+public class PasswordHashingBusyException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public PasswordHashingBusyException(long retryAfterSeconds) {
+        super("Password hashing queue is full");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.demo.security;
+
+import com.example.demo.model.persistence.RevokedToken;
+import com.example.demo.model.persistence.repositories.RevokedTokenRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Ids ({@code jti}) of tokens revoked before they expire. A check first
+ * probes a Bloom filter, so the common case of a token that was never revoked
+ * costs a few bit reads and no lock; only a positive consults the exact map.
+ * Revocations are stored in the {@code revoked_token} table and reloaded on
+ * startup. Entries whose token has expired are purged from the table and the
+ * map, and the filter is rebuilt without them, every
+ * {@code security.revocation.purge-interval-ms}.
+ */
+@Component
+public class RevokedTokens {
+    private static final Logger logger = LoggerFactory.getLogger(RevokedTokens.class);
+
+    private final RevokedTokenRepository revokedTokenRepository;
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+    private final int expectedTokens;
+    private final double falsePositiveRate;
+    private volatile BloomFilter filter;
+
+    public RevokedTokens(RevokedTokenRepository revokedTokenRepository,
+                         MeterRegistry meterRegistry,
+                         @Value("${security.revocation.expected-tokens:100000}") int expectedTokens,
+                         @Value("${security.revocation.false-positive-rate:0.001}") double falsePositiveRate) {
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.expectedTokens = expectedTokens;
+        this.falsePositiveRate = falsePositiveRate;
+        this.filter = new BloomFilter(expectedTokens, falsePositiveRate);
+        meterRegistry.gaugeMapSize("security.revoked.tokens", Collections.emptyList(), revoked);
+    }
+
+    @PostConstruct
+    public synchronized void load() {
+        for (RevokedToken token : revokedTokenRepository.findByExpiresAtAfter(Instant.now())) {
+            revoked.put(token.getJti(), token.getExpiresAt().toEpochMilli());
+            filter.add(token.getJti());
+        }
+        logger.info("Loaded {} revoked tokens", revoked.size());
+    }
+
+    public boolean isRevoked(String jti) {
+        if (jti == null || !filter.mightContain(jti)) {
+            return false;
+        }
+        Long expiresAt = revoked.get(jti);
+        return expiresAt != null && expiresAt > System.currentTimeMillis();
+    }
+
+    /**
+     * Revokes the token until {@code expiresAt}, after which it is refused
+     * anyway.
+     */
+    public synchronized void revoke(String jti, long expiresAt) {
+        if (expiresAt <= System.currentTimeMillis() || revoked.containsKey(jti)) {
+            return;
+        }
+        revokedTokenRepository.save(new RevokedToken(jti, Instant.ofEpochMilli(expiresAt)));
+        revoked.put(jti, expiresAt);
+        filter.add(jti);
+    }
+
+    @Scheduled(fixedDelayString = "${security.revocation.purge-interval-ms:3600000}")
+    public synchronized void purge() {
+        long now = System.currentTimeMillis();
+        if (revoked.values().removeIf(expiresAt -> expiresAt <= now)) {
+            BloomFilter rebuilt = new BloomFilter(expectedTokens, falsePositiveRate);
+            for (String jti : revoked.keySet()) {
+                rebuilt.add(jti);
+            }
+            filter = rebuilt;
+        }
+        int deleted = revokedTokenRepository.deleteExpired(Instant.ofEpochMilli(now));
+        if (deleted > 0) {
+            logger.info("Purged {} expired revoked tokens, {} remain", deleted, revoked.size());
+        }
+    }
+
+    private static final class BloomFilter {
+        private final AtomicLongArray bits;
+        private final int size;
+        private final int hashes;
+
+        BloomFilter(int expectedEntries, double falsePositiveRate) {
+            long optimalBits = (long) Math.ceil(-expectedEntries * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            this.size = (int) Math.max(64, Math.min(optimalBits, Integer.MAX_VALUE - 63));
+            this.hashes = Math.max(1, (int) Math.round((double) size / expectedEntries * Math.log(2)));
+            this.bits = new AtomicLongArray((size + 63) >>> 6);
+        }
+
+        void add(String value) {
+            long hash = hash(value);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 0; i < hashes; i++) {
+                int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % size;
+                long mask = 1L << bit;
+                int word = bit >>> 6;
+                long current;
+                do {
+                    current = bits.get(word);
+                } while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask));
+            }
+        }
+
+        boolean mightContain(String value) {
+            long hash = hash(value);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 0; i < hashes; i++) {
+                int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % size;
+                if ((bits.get(bit >>> 6) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /** 64-bit FNV-1a followed by a murmur3 finalizer. */
+        private static long hash(String value) {
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < value.length(); i++) {
+                hash ^= value.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            hash *= 0xc4ceb9fe1a85ec53L;
+            hash ^= hash >>> 33;
+            return hash;
+        }
+    }
+}
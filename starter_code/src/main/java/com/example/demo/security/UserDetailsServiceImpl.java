@@ -1,27 +1,88 @@
 package com.example.demo.security;
 
-import com.example.demo.model.persistence.User;
+import com.example.demo.cache.BoundedCache;
+import com.example.demo.cache.BoundedCacheMetrics;
 import com.example.demo.model.persistence.repositories.UserRepository;
-import org.springframework.beans.factory.annotation.Autowired;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 
+/**
+ * Loads login credentials through a bounded cache of username to password
+ * hash and authorities, so steady-state logins cost no SQL. A miss reads only
+ * the id, username and password columns, never the user's cart. Callers that
+ * change a user's password must {@link #evict} the username; hashes upgraded
+ * on login through {@link #updatePassword} are evicted here.
+ */
 @Service
-public class UserDetailsServiceImpl implements UserDetailsService {
+public class UserDetailsServiceImpl implements UserDetailsService, UserDetailsPasswordService {
 
-    @Autowired
-    private UserRepository userRepository;
+    private final UserRepository userRepository;
+    private final BoundedCache<String, Credentials> credentials;
+
+    public UserDetailsServiceImpl(UserRepository userRepository,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${security.credentials.cache-size:10000}") int maximumSize,
+                                  @Value("${security.credentials.ttl-ms:300000}") long ttlMillis) {
+        this.userRepository = userRepository;
+        this.credentials = BoundedCacheMetrics.monitor(meterRegistry,
+                new BoundedCache<>("users.credentials", maximumSize, ttlMillis));
+    }
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        User user = userRepository.findByUsername(username);
-        if (user == null) {
+        Credentials cached = credentials.get(username, this::load);
+        if (cached == null) {
             throw new UsernameNotFoundException(username);
         }
-        return new org.springframework.security.core.userdetails.User(user.getUsername(), user.getPassword(), Collections.emptyList());
+        // Authentication erases the password of the returned details, so each login gets its own copy.
+        return new AuthenticatedUser(cached.userId, cached.username, cached.password, cached.authorities);
+    }
+
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        userRepository.updatePassword(user.getUsername(), newPassword);
+        evict(user.getUsername());
+        if (user instanceof AuthenticatedUser) {
+            return new AuthenticatedUser(((AuthenticatedUser) user).getUserId(), user.getUsername(), newPassword,
+                    user.getAuthorities());
+        }
+        return new org.springframework.security.core.userdetails.User(user.getUsername(), newPassword, user.getAuthorities());
+    }
+
+    public void evict(String username) {
+        credentials.invalidate(username);
+    }
+
+    private Credentials load(String username) {
+        List<Object[]> rows = userRepository.findCredentialsByUsername(username);
+        if (rows.isEmpty()) {
+            return null;
+        }
+        return new Credentials((Long) rows.get(0)[0], (String) rows.get(0)[1], (String) rows.get(0)[2],
+                Collections.emptyList());
+    }
+
+    private static final class Credentials {
+        final long userId;
+        final String username;
+        final String password;
+        final Collection<? extends GrantedAuthority> authorities;
+
+        Credentials(long userId, String username, String password, Collection<? extends GrantedAuthority> authorities) {
+            this.userId = userId;
+            this.username = username;
+            this.password = password;
+            this.authorities = authorities;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,73 @@
+package com.example.demo.security;
+
+import com.example.demo.cache.BoundedCache;
+import com.example.demo.cache.BoundedCacheMetrics;
+import com.example.demo.model.persistence.User;
+import com.example.demo.model.persistence.repositories.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * Resolves a username to its {@link User} at most once per request. The id
+ * comes from the {@code uid} claim when the username is the caller's own and
+ * otherwise from a shared username to id cache, so the user and cart are
+ * loaded by primary key without touching the username index. Usernames are
+ * never reassigned, so cached ids need no invalidation.
+ */
+@Component
+public class UserResolver {
+
+    private static final String ATTRIBUTE_PREFIX = UserResolver.class.getName() + ".";
+
+    private final UserRepository userRepository;
+    private final BoundedCache<String, Long> ids;
+
+    public UserResolver(UserRepository userRepository,
+                        MeterRegistry meterRegistry,
+                        @Value("${security.user-ids.cache-size:100000}") int maximumSize,
+                        @Value("${security.user-ids.ttl-ms:3600000}") long ttlMillis) {
+        this.userRepository = userRepository;
+        this.ids = BoundedCacheMetrics.monitor(meterRegistry,
+                new BoundedCache<>("users.ids", maximumSize, ttlMillis));
+    }
+
+    /**
+     * Returns the user named {@code username}, or {@code null} if there is
+     * none.
+     */
+    public User resolve(String username) {
+        if (username == null) {
+            return null;
+        }
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        String attribute = ATTRIBUTE_PREFIX + username;
+        if (attributes != null) {
+            Object resolved = attributes.getAttribute(attribute, RequestAttributes.SCOPE_REQUEST);
+            if (resolved != null) {
+                return (User) resolved;
+            }
+        }
+        Long id = idOf(username);
+        User user = id == null ? null : userRepository.findById(id).orElse(null);
+        if (user != null && attributes != null) {
+            attributes.setAttribute(attribute, user, RequestAttributes.SCOPE_REQUEST);
+        }
+        return user;
+    }
+
+    public Long idOf(String username) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getDetails() instanceof JwtTokens.VerifiedToken) {
+            JwtTokens.VerifiedToken token = (JwtTokens.VerifiedToken) authentication.getDetails();
+            if (token.getUserId() != null && username.equals(token.getUsername())) {
+                return token.getUserId();
+            }
+        }
+        return ids.get(username, userRepository::findIdByUsername);
+    }
+}
@@ -9,19 +9,34 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.authentication.HttpStatusEntryPoint;
 
 @EnableWebSecurity
 public class WebSecurityConfiguration extends WebSecurityConfigurerAdapter {
 
     private final UserDetailsServiceImpl userDetailsService;
-    private final BCryptPasswordEncoder bCryptPasswordEncoder;
+    private final PasswordEncoder passwordEncoder;
+    private final JwtTokens jwtTokens;
+    private final RevokedTokens revokedTokens;
+    private final LoginThrottle loginThrottle;
+    private final LoginCredentialsReader credentialsReader;
+    private final AdminUsers adminUsers;
 
     public WebSecurityConfiguration(UserDetailsServiceImpl userDetailsService,
-                                    BCryptPasswordEncoder bCryptPasswordEncoder) {
+                                    PasswordEncoder passwordEncoder,
+                                    JwtTokens jwtTokens,
+                                    RevokedTokens revokedTokens,
+                                    LoginThrottle loginThrottle,
+                                    LoginCredentialsReader credentialsReader,
+                                    AdminUsers adminUsers) {
         this.userDetailsService = userDetailsService;
-        this.bCryptPasswordEncoder = bCryptPasswordEncoder;
+        this.passwordEncoder = passwordEncoder;
+        this.jwtTokens = jwtTokens;
+        this.revokedTokens = revokedTokens;
+        this.loginThrottle = loginThrottle;
+        this.credentialsReader = credentialsReader;
+        this.adminUsers = adminUsers;
     }
 
     @Override
@@ -29,10 +44,12 @@ public class WebSecurityConfiguration extends WebSecurityConfigurerAdapter {
         http.cors().and()
                 .csrf().disable().authorizeRequests()
                 .antMatchers(HttpMethod.POST, SecurityConstants.SIGN_UP_URL).permitAll()
+                .antMatchers(HttpMethod.POST, "/api/item/import").hasRole(AdminUsers.ROLE)
                 .anyRequest().authenticated()
                 .and()
-                .addFilter(new JWTAuthenticationFilter(authenticationManager()))
-                .addFilter(new JWTAuthenticationVerificationFilter(authenticationManager()))
+                .addFilter(new JWTAuthenticationFilter(authenticationManager(), jwtTokens, loginThrottle, credentialsReader))
+                .addFilter(new JWTAuthenticationVerificationFilter(authenticationManager(), jwtTokens, revokedTokens,
+                        adminUsers))
                 .sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS);
         http.exceptionHandling().authenticationEntryPoint(new HttpStatusEntryPoint((HttpStatus.UNAUTHORIZED)));
     }
@@ -45,8 +62,7 @@ public class WebSecurityConfiguration extends WebSecurityConfigurerAdapter {
 
     @Override
     protected void configure(AuthenticationManagerBuilder auth) throws Exception {
-        auth.parentAuthenticationManager(authenticationManagerBean())
-                .userDetailsService(userDetailsService)
-                .passwordEncoder(bCryptPasswordEncoder);
+        auth.userDetailsService(userDetailsService)
+                .passwordEncoder(passwordEncoder);
     }
 }
\ No newline at end of file
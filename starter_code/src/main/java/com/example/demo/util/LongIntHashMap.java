@@ -0,0 +1,143 @@
+package com.example.demo.util;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from primitive {@code long} keys to {@code int}
+ * values with linear probing and backward-shift deletion, so there are no
+ * tombstones and no boxing. Not thread-safe.
+ */
+public class LongIntHashMap {
+    public static final int MISSING = -1;
+
+    private static final int MIN_CAPACITY = 8;
+
+    private long[] keys;
+    private int[] values;
+    private boolean[] used;
+    private int size;
+    private int mask;
+
+    public LongIntHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public LongIntHashMap(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * 3 / 4 < expectedSize) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(long key) {
+        return slot(key) >= 0;
+    }
+
+    public int get(long key) {
+        int slot = slot(key);
+        return slot < 0 ? MISSING : values[slot];
+    }
+
+    public int put(long key, int value) {
+        int i = hash(key) & mask;
+        while (used[i]) {
+            if (keys[i] == key) {
+                int previous = values[i];
+                values[i] = value;
+                return previous;
+            }
+            i = (i + 1) & mask;
+        }
+        used[i] = true;
+        keys[i] = key;
+        values[i] = value;
+        if (++size > (mask + 1) * 3 / 4) {
+            resize((mask + 1) << 1);
+        }
+        return MISSING;
+    }
+
+    public int remove(long key) {
+        int slot = slot(key);
+        if (slot < 0) {
+            return MISSING;
+        }
+        int previous = values[slot];
+        int gap = slot;
+        int i = (gap + 1) & mask;
+        while (used[i]) {
+            int home = hash(keys[i]) & mask;
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = keys[i];
+                values[gap] = values[i];
+                gap = i;
+            }
+            i = (i + 1) & mask;
+        }
+        used[gap] = false;
+        size--;
+        return previous;
+    }
+
+    public void forEach(EntryVisitor visitor) {
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i]) {
+                visitor.visit(keys[i], values[i]);
+            }
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    private int slot(long key) {
+        int i = hash(key) & mask;
+        while (used[i]) {
+            if (keys[i] == key) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(capacity);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+    }
+
+    public interface EntryVisitor {
+        void visit(long key, int value);
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.demo;
+
+import com.example.demo.security.BoundedBCryptPasswordEncoder;
+import com.example.demo.security.PasswordHashingBusyException;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class BoundedBCryptPasswordEncoderTest {
+
+    @Test
+    public void encodesAndMatchesOnThePool() {
+        BoundedBCryptPasswordEncoder encoder = new BoundedBCryptPasswordEncoder(4, 1, 4, 1);
+        try {
+            String encoded = encoder.encode("password123");
+
+            Assert.assertTrue(encoded.startsWith("$2a$04$"));
+            Assert.assertTrue(encoder.matches("password123", encoded));
+            Assert.assertFalse(encoder.matches("password124", encoded));
+        } finally {
+            encoder.shutdown();
+        }
+    }
+
+    @Test
+    public void upgradesHashesOfAnotherCost() {
+        BoundedBCryptPasswordEncoder encoder = new BoundedBCryptPasswordEncoder(5, 1, 4, 1);
+        try {
+            Assert.assertFalse(encoder.upgradeEncoding(encoder.encode("password123")));
+            Assert.assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(4).encode("password123")));
+            Assert.assertFalse(encoder.upgradeEncoding("plain"));
+            Assert.assertFalse(encoder.upgradeEncoding(null));
+        } finally {
+            encoder.shutdown();
+        }
+    }
+
+    @Test
+    public void rejectsHashesBeyondTheQueue() throws Exception {
+        BoundedBCryptPasswordEncoder encoder = new BoundedBCryptPasswordEncoder(12, 1, 1, 3);
+        ExecutorService callers = Executors.newFixedThreadPool(4);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<String>> hashes = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                hashes.add(callers.submit(() -> {
+                    start.await();
+                    return encoder.encode("password123");
+                }));
+            }
+            start.countDown();
+
+            int rejected = 0;
+            for (Future<String> hash : hashes) {
+                try {
+                    hash.get();
+                } catch (ExecutionException e) {
+                    Assert.assertTrue(e.getCause() instanceof PasswordHashingBusyException);
+                    Assert.assertEquals(3, ((PasswordHashingBusyException) e.getCause()).getRetryAfterSeconds());
+                    rejected++;
+                }
+            }
+            Assert.assertTrue(rejected >= 2);
+        } finally {
+            callers.shutdownNow();
+            encoder.shutdown();
+        }
+    }
+
+    @Test
+    public void calibratesWithinBounds() {
+        int strength = BoundedBCryptPasswordEncoder.calibrate(0, 4, 6);
+
+        Assert.assertEquals(4, strength);
+        Assert.assertEquals(6, BoundedBCryptPasswordEncoder.calibrate(60_000, 4, 6));
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.demo;
+
+import com.example.demo.cache.BoundedCache;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class BoundedCacheTest {
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        BoundedCache<String, String> cache = new BoundedCache<>("test", 2, 0);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        Assert.assertEquals("1", cache.get("a"));
+        cache.put("c", "3");
+
+        Assert.assertNull(cache.get("b"));
+        Assert.assertEquals("1", cache.get("a"));
+        Assert.assertEquals("3", cache.get("c"));
+        Assert.assertEquals(1, cache.evictionCount());
+        Assert.assertEquals(3, cache.hitCount());
+        Assert.assertEquals(1, cache.missCount());
+    }
+
+    @Test
+    public void expiresAfterTtl() {
+        AtomicLong now = new AtomicLong();
+        BoundedCache<String, String> cache = new BoundedCache<>("test", 10, 1000, now::get);
+        cache.put("a", "1");
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(999));
+        Assert.assertEquals("1", cache.get("a"));
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        Assert.assertNull(cache.get("a"));
+        Assert.assertEquals("2", cache.get("a", key -> "2"));
+        Assert.assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void putIfAbsentKeepsLiveEntry() {
+        AtomicLong now = new AtomicLong();
+        BoundedCache<String, String> cache = new BoundedCache<>("test", 10, 1000, now::get);
+
+        Assert.assertNull(cache.putIfAbsent("a", "1"));
+        Assert.assertEquals("1", cache.putIfAbsent("a", "2"));
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+        Assert.assertNull(cache.putIfAbsent("a", "3"));
+        Assert.assertEquals("3", cache.get("a"));
+    }
+
+    @Test
+    public void loadRacingAnInvalidationIsNotCached() {
+        BoundedCache<String, String> cache = new BoundedCache<>("test", 10, 0);
+
+        String loaded = cache.get("a", key -> {
+            cache.invalidate(key);
+            return "stale";
+        });
+
+        Assert.assertEquals("stale", loaded);
+        Assert.assertNull(cache.get("a"));
+        Assert.assertEquals("fresh", cache.get("a", key -> "fresh"));
+        Assert.assertEquals("fresh", cache.get("a"));
+    }
+
+    @Test
+    public void loadRacingInvalidateAllIsNotCached() throws Exception {
+        BoundedCache<String, String> cache = new BoundedCache<>("test", 10, 0);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch invalidated = new CountDownLatch(1);
+
+        Thread loader = new Thread(() -> cache.get("a", key -> {
+            loading.countDown();
+            try {
+                invalidated.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "stale";
+        }));
+        loader.start();
+        loading.await();
+        cache.invalidateAll();
+        invalidated.countDown();
+        loader.join();
+
+        Assert.assertNull(cache.get("a"));
+    }
+
+    @Test
+    public void batchLoadRacingAnInvalidationCachesOnlyUntouchedKeys() throws Exception {
+        BoundedCache<String, String> cache = new BoundedCache<>("test", 1000, 0);
+        cache.put("a", "1");
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch invalidated = new CountDownLatch(1);
+        AtomicReference<Map<String, String>> result = new AtomicReference<>();
+
+        Thread loader = new Thread(() -> result.set(cache.getAll(Arrays.asList("b", "a", "c", "d"), missing -> {
+            loading.countDown();
+            try {
+                invalidated.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            Map<String, String> loaded = new HashMap<>();
+            loaded.put("b", "stale");
+            loaded.put("c", "3");
+            return loaded;
+        })));
+        loader.start();
+        loading.await();
+        cache.invalidate("b");
+        invalidated.countDown();
+        loader.join();
+
+        Assert.assertEquals(Arrays.asList("b", "a", "c"), new ArrayList<>(result.get().keySet()));
+        Assert.assertEquals("stale", result.get().get("b"));
+        Assert.assertNull(cache.get("b"));
+        Assert.assertEquals("1", cache.get("a"));
+        Assert.assertEquals("3", cache.get("c"));
+        Assert.assertNull(cache.get("d"));
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.demo;
+
+import com.auth0.jwt.JWT;
+import com.example.demo.model.money.Money;
+import com.example.demo.model.persistence.Cart;
+import com.example.demo.model.persistence.CartItem;
+import com.example.demo.model.persistence.repositories.UserRepository;
+import com.example.demo.model.requests.CreateUserRequest;
+import com.example.demo.model.requests.ModifyCartRequest;
+import com.example.demo.security.SecurityConstants;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.json.AutoConfigureJsonTesters;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.json.JacksonTester;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.auth0.jwt.algorithms.Algorithm.HMAC512;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureJsonTesters
+public class CartConcurrencyTest {
+    private static final int THREADS = 8;
+    private static final int REQUESTS_PER_THREAD = 25;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JacksonTester<CreateUserRequest> json;
+
+    @Autowired
+    private JacksonTester<ModifyCartRequest> cartRequestJson;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    public void concurrentAddToCartKeepsTotalConsistent() throws Exception {
+        String[] usernames = {"concurrency_test1", "concurrency_test2"};
+        String[] tokens = new String[usernames.length];
+        for (int i = 0; i < usernames.length; i++) {
+            tokens[i] = createUserAndGetJWTToken(usernames[i], "password123");
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            results.add(executor.submit((Callable<Integer>) () -> {
+                int failures = 0;
+                for (int r = 0; r < REQUESTS_PER_THREAD; r++) {
+                    int user = (thread + r) % usernames.length;
+                    ModifyCartRequest request = new ModifyCartRequest();
+                    request.setUsername(usernames[user]);
+                    request.setItemId(1 + r % 2);
+                    request.setQuantity(1 + r % 3);
+                    MvcResult result = mockMvc.perform(
+                            MockMvcRequestBuilders
+                                    .post("/api/cart/addToCart")
+                                    .contentType(MediaType.APPLICATION_JSON_UTF8)
+                                    .content(cartRequestJson.write(request).getJson())
+                                    .header(HttpHeaders.AUTHORIZATION, tokens[user])
+                    ).andReturn();
+                    if (result.getResponse().getStatus() != 200) {
+                        failures++;
+                    }
+                }
+                return failures;
+            }));
+        }
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(2, TimeUnit.MINUTES));
+        for (Future<Integer> result : results) {
+            Assert.assertEquals(0, (int) result.get());
+        }
+
+        int expectedUnits = 0;
+        for (int r = 0; r < REQUESTS_PER_THREAD; r++) {
+            expectedUnits += 1 + r % 3;
+        }
+        expectedUnits = expectedUnits * THREADS;
+
+        int persistedUnits = 0;
+        for (String username : usernames) {
+            Cart cart = transactionTemplate.execute(status -> userRepository.findByUsername(username).getCart().copy());
+            Money lineSum = Money.ZERO;
+            for (CartItem line : cart.getItems()) {
+                lineSum = lineSum.plus(line.getUnitPrice().times(line.getQuantity()));
+                persistedUnits += line.getQuantity();
+            }
+            Assert.assertEquals(lineSum, cart.getTotal());
+        }
+        Assert.assertEquals(expectedUnits, persistedUnits);
+    }
+
+    public String createUserAndGetJWTToken(String username, String password) throws Exception {
+        CreateUserRequest createUserRequest = new CreateUserRequest();
+        createUserRequest.setUsername(username);
+        createUserRequest.setPassword(password);
+        createUserRequest.setConfirmPassword(password);
+
+        mockMvc.perform(
+                MockMvcRequestBuilders
+                        .post("/api/user/create")
+                        .contentType(MediaType.APPLICATION_JSON_UTF8)
+                        .content(json.write(createUserRequest).getJson())
+        );
+
+        String token = JWT.create()
+                .withSubject(username)
+                .withExpiresAt(new Date(System.currentTimeMillis() + SecurityConstants.EXPIRATION_TIME))
+                .sign(HMAC512(SecurityConstants.SECRET.getBytes()));
+        return "Bearer " + token;
+    }
+}
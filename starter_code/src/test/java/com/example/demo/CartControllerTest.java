@@ -1,9 +1,14 @@
 package com.example.demo;
 
 import com.auth0.jwt.JWT;
+import com.jayway.jsonpath.JsonPath;
+import com.example.demo.model.requests.CartOperation;
 import com.example.demo.model.requests.CreateUserRequest;
+import com.example.demo.model.requests.ModifyCartBatchRequest;
 import com.example.demo.model.requests.ModifyCartRequest;
 import com.example.demo.security.SecurityConstants;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -19,6 +24,9 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
+import javax.persistence.EntityManagerFactory;
+import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Date;
 
 import static com.auth0.jwt.algorithms.Algorithm.HMAC512;
@@ -37,6 +45,12 @@ public class CartControllerTest {
     @Autowired
     private JacksonTester<ModifyCartRequest> cartRequestJson;
 
+    @Autowired
+    private JacksonTester<ModifyCartBatchRequest> cartBatchRequestJson;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
 
     @Test
     public void addToCart() throws Exception {
@@ -58,6 +72,45 @@ public class CartControllerTest {
         Assert.assertEquals(200, mvcResult.getResponse().getStatus());
     }
 
+    @Test
+    public void addToCartResolvesUserByPrimaryKey() throws Exception {
+        String legacyToken = createUserAndGetJWTToken("user_cart_uid", "password123");
+        MvcResult login = mockMvc.perform(
+                MockMvcRequestBuilders
+                        .post("/login")
+                        .contentType(MediaType.APPLICATION_JSON_UTF8)
+                        .content("{\"username\":\"user_cart_uid\",\"password\":\"password123\"}")
+        ).andReturn();
+        String token = login.getResponse().getHeader(HttpHeaders.AUTHORIZATION);
+
+        ModifyCartRequest modifyCartRequest = new ModifyCartRequest();
+        modifyCartRequest.setItemId(1);
+        modifyCartRequest.setQuantity(1);
+        modifyCartRequest.setUsername("user_cart_uid");
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        try {
+            String[] authorizations = {token, legacyToken, legacyToken};
+            long[] expectedQueries = {0, 1, 0};
+            for (int i = 0; i < authorizations.length; i++) {
+                statistics.clear();
+                MvcResult mvcResult = mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .post("/api/cart/addToCart")
+                                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                                .content(cartRequestJson.write(modifyCartRequest).getJson())
+                                .header(HttpHeaders.AUTHORIZATION, authorizations[i])
+                ).andReturn();
+
+                Assert.assertEquals(200, mvcResult.getResponse().getStatus());
+                Assert.assertEquals(expectedQueries[i], statistics.getQueryExecutionCount());
+            }
+        } finally {
+            statistics.setStatisticsEnabled(false);
+        }
+    }
+
     @Test
     public void addToCartWithNotFoundUser() throws Exception {
         String token = createUserAndGetJWTToken("user_test2", "password123");
@@ -158,6 +211,108 @@ public class CartControllerTest {
         Assert.assertEquals(200, mvcResult.getResponse().getStatus());
     }
 
+    @Test
+    public void addToCartWithLargeQuantityKeepsOneLine() throws Exception {
+        String token = createUserAndGetJWTToken("user_test7", "password123");
+
+        ModifyCartRequest modifyCartRequest = new ModifyCartRequest();
+        modifyCartRequest.setItemId(1);
+        modifyCartRequest.setQuantity(10000);
+        modifyCartRequest.setUsername("user_test7");
+
+        MvcResult mvcResult = mockMvc.perform(
+                MockMvcRequestBuilders
+                        .post("/api/cart/addToCart")
+                        .contentType(MediaType.APPLICATION_JSON_UTF8)
+                        .content(cartRequestJson.write(modifyCartRequest).getJson())
+                        .header(HttpHeaders.AUTHORIZATION, token)
+        ).andReturn();
+
+        Assert.assertEquals(200, mvcResult.getResponse().getStatus());
+        String body = mvcResult.getResponse().getContentAsString();
+        Assert.assertEquals(1, (int) JsonPath.read(body, "$.items.length()"));
+        Assert.assertEquals(10000, (int) JsonPath.read(body, "$.items[0].quantity"));
+        Assert.assertEquals(0, new BigDecimal("29900.00").compareTo(new BigDecimal(JsonPath.read(body, "$.total").toString())));
+    }
+
+    @Test
+    public void batchModifyCart() throws Exception {
+        String token = createUserAndGetJWTToken("user_test8", "password123");
+
+        ModifyCartBatchRequest batchRequest = new ModifyCartBatchRequest();
+        batchRequest.setUsername("user_test8");
+        batchRequest.getOperations().add(cartOperation(CartOperation.Type.ADD, 1, 3));
+        batchRequest.getOperations().add(cartOperation(CartOperation.Type.ADD, 2, 2));
+        batchRequest.getOperations().add(cartOperation(CartOperation.Type.SET, 1, 1));
+        batchRequest.getOperations().add(cartOperation(CartOperation.Type.REMOVE, 2, 1));
+
+        MvcResult mvcResult = mockMvc.perform(
+                MockMvcRequestBuilders
+                        .post("/api/cart/batch")
+                        .contentType(MediaType.APPLICATION_JSON_UTF8)
+                        .content(cartBatchRequestJson.write(batchRequest).getJson())
+                        .header(HttpHeaders.AUTHORIZATION, token)
+        ).andReturn();
+
+        Assert.assertEquals(200, mvcResult.getResponse().getStatus());
+        String body = mvcResult.getResponse().getContentAsString();
+        Assert.assertEquals(2, (int) JsonPath.read(body, "$.items.length()"));
+        Assert.assertEquals(1, (int) JsonPath.read(body, "$.items[0].quantity"));
+        Assert.assertEquals(1, (int) JsonPath.read(body, "$.items[1].quantity"));
+        Assert.assertEquals(0, new BigDecimal("4.98").compareTo(new BigDecimal(JsonPath.read(body, "$.total").toString())));
+
+        batchRequest.getOperations().clear();
+        batchRequest.getOperations().add(cartOperation(CartOperation.Type.ADD, 10, 1)); // only have 2 items in db
+
+        MvcResult notFoundResult = mockMvc.perform(
+                MockMvcRequestBuilders
+                        .post("/api/cart/batch")
+                        .contentType(MediaType.APPLICATION_JSON_UTF8)
+                        .content(cartBatchRequestJson.write(batchRequest).getJson())
+                        .header(HttpHeaders.AUTHORIZATION, token)
+        ).andReturn();
+
+        Assert.assertEquals(404, notFoundResult.getResponse().getStatus());
+    }
+
+    @Test
+    public void batchRefusesMissingOperationsAndInvalidQuantities() throws Exception {
+        String token = createUserAndGetJWTToken("user_test_batch", "password123");
+
+        ModifyCartBatchRequest batchRequest = new ModifyCartBatchRequest();
+        batchRequest.setUsername("user_test_batch");
+        batchRequest.setOperations(null);
+        Assert.assertEquals(400, postBatch(batchRequest, token));
+
+        batchRequest.setOperations(new ArrayList<>());
+        Assert.assertEquals(400, postBatch(batchRequest, token));
+
+        batchRequest.getOperations().add(cartOperation(CartOperation.Type.ADD, 1, 2));
+        batchRequest.getOperations().add(cartOperation(CartOperation.Type.REMOVE, 1, -1));
+        Assert.assertEquals(400, postBatch(batchRequest, token));
+
+        batchRequest.getOperations().set(1, cartOperation(CartOperation.Type.SET, 1, 0));
+        Assert.assertEquals(400, postBatch(batchRequest, token));
+    }
+
+    private int postBatch(ModifyCartBatchRequest batchRequest, String token) throws Exception {
+        return mockMvc.perform(
+                MockMvcRequestBuilders
+                        .post("/api/cart/batch")
+                        .contentType(MediaType.APPLICATION_JSON_UTF8)
+                        .content(cartBatchRequestJson.write(batchRequest).getJson())
+                        .header(HttpHeaders.AUTHORIZATION, token)
+        ).andReturn().getResponse().getStatus();
+    }
+
+    private CartOperation cartOperation(CartOperation.Type type, long itemId, int quantity) {
+        CartOperation operation = new CartOperation();
+        operation.setType(type);
+        operation.setItemId(itemId);
+        operation.setQuantity(quantity);
+        return operation;
+    }
+
     public String createUserAndGetJWTToken(String username, String password) throws Exception {
         CreateUserRequest createUserRequest = new CreateUserRequest();
         createUserRequest.setUsername(username);
@@ -0,0 +1,101 @@
+package com.example.demo;
+
+import com.example.demo.cart.CartLocks;
+import com.example.demo.cart.CartStore;
+import com.example.demo.model.persistence.Cart;
+import com.example.demo.model.persistence.User;
+import com.example.demo.model.persistence.repositories.CartRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class CartStoreFlushTest {
+
+    private final CartRepository cartRepository = Mockito.mock(CartRepository.class);
+    private final CartStore cartStore = new CartStore();
+
+    @Before
+    public void setUp() {
+        ReflectionTestUtils.setField(cartStore, "cartRepository", cartRepository);
+        ReflectionTestUtils.setField(cartStore, "cartLocks", new CartLocks(4));
+        ReflectionTestUtils.setField(cartStore, "writeBehind", true);
+        ReflectionTestUtils.setField(cartStore, "batchSize", 10);
+        ReflectionTestUtils.setField(cartStore, "idleMillis", 600_000L);
+    }
+
+    @Test
+    public void flushDirtyReturnsWhileTheDatabaseIsDown() throws Exception {
+        Mockito.when(cartRepository.saveAll(Mockito.anyIterable()))
+                .thenThrow(new DataAccessResourceFailureException("database down"));
+        Mockito.when(cartRepository.save(Mockito.any(Cart.class)))
+                .thenThrow(new DataAccessResourceFailureException("database down"));
+        for (int i = 0; i < 5; i++) {
+            cartStore.update(user("flush_test" + i), cart -> { });
+        }
+
+        CompletableFuture.runAsync(cartStore::flushDirty).get(10, TimeUnit.SECONDS);
+        Mockito.verify(cartRepository, Mockito.times(5)).save(Mockito.any(Cart.class));
+
+        Mockito.reset(cartRepository);
+        Mockito.when(cartRepository.saveAll(Mockito.anyIterable())).thenAnswer(invocation -> {
+            Iterable<Cart> carts = invocation.getArgument(0);
+            List<Cart> saved = new ArrayList<>();
+            carts.forEach(saved::add);
+            return saved;
+        });
+        cartStore.flushDirty();
+
+        Mockito.verify(cartRepository, Mockito.times(1))
+                .saveAll(Mockito.argThat(carts -> carts.spliterator().getExactSizeIfKnown() == 5));
+        cartStore.flushDirty();
+        Mockito.verify(cartRepository, Mockito.times(1)).saveAll(Mockito.anyIterable());
+    }
+
+    @Test
+    public void flushDirtyReturnsWhileWritersKeepDirtyingCarts() throws Exception {
+        Mockito.when(cartRepository.saveAll(Mockito.anyIterable())).thenAnswer(invocation -> {
+            Iterable<Cart> carts = invocation.getArgument(0);
+            List<Cart> saved = new ArrayList<>();
+            carts.forEach(saved::add);
+            return saved;
+        });
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            users.add(user("flush_writer" + i));
+        }
+        AtomicBoolean running = new AtomicBoolean(true);
+        CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> {
+            while (running.get()) {
+                for (User user : users) {
+                    cartStore.update(user, cart -> { });
+                }
+            }
+        });
+        try {
+            for (int i = 0; i < 20; i++) {
+                CompletableFuture.runAsync(cartStore::flushDirty).get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            running.set(false);
+            writer.get(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private static User user(String username) {
+        Cart cart = new Cart();
+        cart.setItems(new ArrayList<>());
+        User user = new User();
+        user.setUsername(username);
+        user.setCart(cart);
+        cart.setUser(user);
+        return user;
+    }
+}
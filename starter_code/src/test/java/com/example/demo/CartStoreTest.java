@@ -0,0 +1,135 @@
+package com.example.demo;
+
+import com.auth0.jwt.JWT;
+import com.example.demo.cart.CartStore;
+import com.example.demo.model.persistence.Cart;
+import com.example.demo.model.persistence.repositories.UserRepository;
+import com.example.demo.model.requests.CreateUserRequest;
+import com.example.demo.model.requests.ModifyCartRequest;
+import com.example.demo.security.SecurityConstants;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.json.AutoConfigureJsonTesters;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.json.JacksonTester;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Date;
+
+import static com.auth0.jwt.algorithms.Algorithm.HMAC512;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:cartstore;DB_CLOSE_DELAY=-1",
+        "cart.write-behind.enabled=true",
+        "cart.write-behind.flush-interval-ms=3600000"
+})
+@AutoConfigureMockMvc
+@AutoConfigureJsonTesters
+public class CartStoreTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JacksonTester<CreateUserRequest> json;
+
+    @Autowired
+    private JacksonTester<ModifyCartRequest> cartRequestJson;
+
+    @Autowired
+    private CartStore cartStore;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    public void addToCartIsWrittenOnFlush() throws Exception {
+        String token = createUserAndGetJWTToken("store_test1", "password123");
+
+        ModifyCartRequest modifyCartRequest = new ModifyCartRequest();
+        modifyCartRequest.setItemId(1);
+        modifyCartRequest.setQuantity(3);
+        modifyCartRequest.setUsername("store_test1");
+
+        MvcResult mvcResult = mockMvc.perform(
+                MockMvcRequestBuilders
+                        .post("/api/cart/addToCart")
+                        .contentType(MediaType.APPLICATION_JSON_UTF8)
+                        .content(cartRequestJson.write(modifyCartRequest).getJson())
+                        .header(HttpHeaders.AUTHORIZATION, token)
+        ).andReturn();
+
+        Assert.assertEquals(200, mvcResult.getResponse().getStatus());
+        Assert.assertEquals(0, persistedLineCount("store_test1"));
+
+        cartStore.flush("store_test1");
+
+        Assert.assertEquals(1, persistedLineCount("store_test1"));
+    }
+
+    @Test
+    public void submitOrderFlushesCart() throws Exception {
+        String token = createUserAndGetJWTToken("store_test2", "password123");
+
+        ModifyCartRequest modifyCartRequest = new ModifyCartRequest();
+        modifyCartRequest.setItemId(2);
+        modifyCartRequest.setQuantity(1);
+        modifyCartRequest.setUsername("store_test2");
+
+        mockMvc.perform(
+                MockMvcRequestBuilders
+                        .post("/api/cart/addToCart")
+                        .contentType(MediaType.APPLICATION_JSON_UTF8)
+                        .content(cartRequestJson.write(modifyCartRequest).getJson())
+                        .header(HttpHeaders.AUTHORIZATION, token)
+        ).andReturn();
+
+        MvcResult mvcResult = mockMvc.perform(
+                MockMvcRequestBuilders
+                        .post("/api/order/submit/" + "store_test2")
+                        .header(HttpHeaders.AUTHORIZATION, token)
+        ).andReturn();
+
+        Assert.assertEquals(202, mvcResult.getResponse().getStatus());
+        Assert.assertEquals(1, persistedLineCount("store_test2"));
+    }
+
+    private int persistedLineCount(String username) {
+        return transactionTemplate.execute(status -> {
+            Cart cart = userRepository.findByUsername(username).getCart();
+            return cart.getItems().size();
+        });
+    }
+
+    public String createUserAndGetJWTToken(String username, String password) throws Exception {
+        CreateUserRequest createUserRequest = new CreateUserRequest();
+        createUserRequest.setUsername(username);
+        createUserRequest.setPassword(password);
+        createUserRequest.setConfirmPassword(password);
+
+        mockMvc.perform(
+                MockMvcRequestBuilders
+                        .post("/api/user/create")
+                        .contentType(MediaType.APPLICATION_JSON_UTF8)
+                        .content(json.write(createUserRequest).getJson())
+        );
+
+        String token = JWT.create()
+                .withSubject(username)
+                .withExpiresAt(new Date(System.currentTimeMillis() + SecurityConstants.EXPIRATION_TIME))
+                .sign(HMAC512(SecurityConstants.SECRET.getBytes()));
+        return "Bearer " + token;
+    }
+}
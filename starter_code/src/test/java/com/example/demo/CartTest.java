@@ -0,0 +1,96 @@
+package com.example.demo;
+
+import com.example.demo.model.money.Money;
+import com.example.demo.model.persistence.Cart;
+import com.example.demo.model.persistence.CartItem;
+import com.example.demo.model.persistence.Item;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class CartTest {
+
+    @Test
+    public void removingAbsentItemLeavesTotalUntouched() {
+        Cart cart = new Cart();
+        cart.addItem(item(1, "2.99"), 2);
+
+        cart.removeItem(item(2, "1.99"), 5);
+
+        Assert.assertEquals(Money.parse("5.98"), cart.getTotal());
+        Assert.assertFalse(cart.contains(2));
+        Assert.assertEquals(1, cart.getItems().size());
+    }
+
+    @Test
+    public void removingMoreThanHeldClampsToLine() {
+        Cart cart = new Cart();
+        cart.addItem(item(1, "2.99"), 2);
+
+        cart.removeItem(item(1, "2.99"), 5);
+
+        Assert.assertEquals(Money.ZERO, cart.getTotal());
+        Assert.assertFalse(cart.contains(1));
+        Assert.assertTrue(cart.getItems().isEmpty());
+    }
+
+    @Test
+    public void keepsLinesIndexedAcrossLineRemoval() {
+        Cart cart = new Cart();
+        for (long id = 1; id <= 1000; id++) {
+            cart.addItem(item(id, "1.00"), 1);
+        }
+        for (long id = 2; id <= 1000; id += 2) {
+            cart.removeItem(item(id, "1.00"), 1);
+        }
+        cart.addItem(item(1001, "1.00"), 3);
+
+        Assert.assertEquals(501, cart.getItems().size());
+        Set<Long> ids = new HashSet<>();
+        for (CartItem line : cart.getItems()) {
+            Assert.assertEquals(1, line.getItemId() % 2);
+            Assert.assertEquals(line.getQuantity(), cart.getQuantity(line.getItemId()));
+            Assert.assertTrue(ids.add(line.getItemId()));
+        }
+        Assert.assertFalse(cart.contains(500));
+        Assert.assertEquals(3, cart.getQuantity(1001));
+        Assert.assertEquals(Money.parse("503.00"), cart.getTotal());
+    }
+
+    @Test
+    public void removingALineMovesOnlyTheLastLine() {
+        Cart cart = new Cart();
+        for (long id = 1; id <= 4; id++) {
+            cart.addItem(item(id, "1.00"), 1);
+        }
+
+        cart.removeItem(item(2, "1.00"), 1);
+
+        Assert.assertEquals(Arrays.asList(1L, 4L, 3L), itemIds(cart));
+        cart.removeItem(item(3, "1.00"), 1);
+        Assert.assertEquals(Arrays.asList(1L, 4L), itemIds(cart));
+        Assert.assertEquals(1, cart.getQuantity(4));
+    }
+
+    private List<Long> itemIds(Cart cart) {
+        List<Long> ids = new ArrayList<>();
+        for (CartItem line : cart.getItems()) {
+            ids.add(line.getItemId());
+        }
+        return ids;
+    }
+
+    private Item item(long id, String price) {
+        Item item = new Item();
+        item.setId(id);
+        item.setName("Item " + id);
+        item.setPrice(Money.parse(price));
+        item.setDescription("Item " + id);
+        return item;
+    }
+}
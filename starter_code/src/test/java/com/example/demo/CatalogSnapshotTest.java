@@ -0,0 +1,79 @@
+package com.example.demo;
+
+import com.example.demo.catalog.CatalogSnapshot;
+import com.example.demo.catalog.ItemChangedEvent;
+import com.example.demo.model.money.Money;
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.repositories.ItemRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+public class CatalogSnapshotTest {
+
+    private final ItemRepository itemRepository = Mockito.mock(ItemRepository.class);
+    private final TransactionTemplate transactionTemplate = Mockito.mock(TransactionTemplate.class);
+    private final CatalogSnapshot catalogSnapshot = new CatalogSnapshot(new ObjectMapper());
+
+    @Before
+    public void setUp() {
+        ReflectionTestUtils.setField(catalogSnapshot, "itemRepository", itemRepository);
+        ReflectionTestUtils.setField(catalogSnapshot, "transactionTemplate", transactionTemplate);
+        ReflectionTestUtils.setField(catalogSnapshot, "entityManager", Mockito.mock(EntityManager.class));
+        ReflectionTestUtils.setField(catalogSnapshot, "gzipMinBytes", 1024);
+        Mockito.when(transactionTemplate.execute(Mockito.any()))
+                .thenAnswer(invocation -> ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(null));
+    }
+
+    @Test
+    public void itemChangesDoNotWaitForARebuildAndSurviveIt() throws Exception {
+        Mockito.when(itemRepository.streamAll()).thenReturn(Stream.of(item(1, "Round Widget")));
+        catalogSnapshot.rebuild();
+
+        CountDownLatch streaming = new CountDownLatch(1);
+        CountDownLatch changed = new CountDownLatch(1);
+        Mockito.when(itemRepository.streamAll()).thenReturn(Stream.of(item(1, "Round Widget"), item(2, "Square Widget"))
+                .peek(item -> {
+                    streaming.countDown();
+                    try {
+                        changed.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }));
+        CompletableFuture<Void> rebuild = CompletableFuture.runAsync(catalogSnapshot::rebuild);
+        streaming.await();
+
+        CompletableFuture.runAsync(() -> catalogSnapshot.onItemChanged(
+                new ItemChangedEvent(item(3, "Flat Widget"), ItemChangedEvent.Type.SAVED))).get(5, TimeUnit.SECONDS);
+        Assert.assertNotNull(catalogSnapshot.item(3));
+        changed.countDown();
+        rebuild.get(5, TimeUnit.SECONDS);
+
+        Assert.assertNotNull(catalogSnapshot.item(2));
+        Assert.assertNotNull(catalogSnapshot.item(3));
+        String list = new String(catalogSnapshot.list().getJson(), StandardCharsets.UTF_8);
+        Assert.assertTrue(list.contains("Square Widget") && list.contains("Flat Widget"));
+    }
+
+    private static Item item(long id, String name) {
+        Item item = new Item();
+        item.setId(id);
+        item.setName(name);
+        item.setPrice(Money.parse("1.99"));
+        item.setDescription("");
+        return item;
+    }
+}
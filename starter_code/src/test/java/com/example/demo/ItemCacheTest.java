@@ -0,0 +1,51 @@
+package com.example.demo;
+
+import com.example.demo.catalog.ItemCache;
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.repositories.ItemRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class ItemCacheTest {
+
+    @Autowired
+    private ItemCache itemCache;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    public void servesRepeatReadsFromCacheAndInvalidatesOnSave() {
+        Item item = itemCache.findById(2L).get();
+        double hitsBefore = hits();
+        Assert.assertSame(item, itemCache.findById(2L).get());
+        Assert.assertEquals(hitsBefore + 1, hits(), 0);
+
+        String description = item.getDescription();
+        Item changed = itemRepository.findById(2L).get();
+        changed.setDescription("A widget that is very square");
+        itemRepository.save(changed);
+        try {
+            Assert.assertEquals("A widget that is very square", itemCache.findById(2L).get().getDescription());
+        } finally {
+            changed.setDescription(description);
+            itemRepository.save(changed);
+        }
+        Assert.assertEquals(description, itemCache.findById(2L).get().getDescription());
+    }
+
+    private double hits() {
+        return meterRegistry.get("cache.gets").tag("cache", "items.byId").tag("result", "hit")
+                .functionCounter().count();
+    }
+}
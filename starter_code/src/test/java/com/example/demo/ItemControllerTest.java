@@ -1,6 +1,9 @@
 package com.example.demo;
 
 import com.auth0.jwt.JWT;
+import com.jayway.jsonpath.JsonPath;
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.repositories.ItemRepository;
 import com.example.demo.model.requests.CreateUserRequest;
 import com.example.demo.security.SecurityConstants;
 import org.junit.Assert;
@@ -16,9 +19,11 @@ import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
 import java.util.Date;
+import java.util.List;
 
 import static com.auth0.jwt.algorithms.Algorithm.HMAC512;
 
@@ -33,6 +38,9 @@ public class ItemControllerTest {
     @Autowired
     private JacksonTester<CreateUserRequest> json;
 
+    @Autowired
+    private ItemRepository itemRepository;
+
     @Test
     public void getAllItems() throws Exception {
         MvcResult mvcResult = mockMvc.perform(
@@ -74,6 +82,207 @@ public class ItemControllerTest {
         Assert.assertEquals(404, mvcResultNotFoundItem.getResponse().getStatus());
     }
 
+    @Test
+    public void getItemPages() throws Exception {
+        String token = createUserAndGetJWTToken("user_test4", "password123");
+
+        MvcResult firstPage = mockMvc.perform(
+                MockMvcRequestBuilders
+                        .get("/api/item").param("size", "1")
+                        .header(HttpHeaders.AUTHORIZATION, token)
+        ).andReturn();
+
+        Assert.assertEquals(200, firstPage.getResponse().getStatus());
+        String body = firstPage.getResponse().getContentAsString();
+        Assert.assertEquals(1, (int) JsonPath.read(body, "$.items.length()"));
+        Assert.assertEquals(1, (int) JsonPath.read(body, "$.items[0].id"));
+        Assert.assertEquals(1, (int) JsonPath.read(body, "$.nextCursor"));
+
+        MvcResult secondPage = mockMvc.perform(
+                MockMvcRequestBuilders
+                        .get("/api/item").param("size", "1").param("after", "1")
+                        .header(HttpHeaders.AUTHORIZATION, token)
+        ).andReturn();
+
+        Assert.assertEquals(2, (int) JsonPath.read(secondPage.getResponse().getContentAsString(), "$.items[0].id"));
+    }
+
+    @Test
+    public void streamItems() throws Exception {
+        String token = createUserAndGetJWTToken("user_test5", "password123");
+
+        MvcResult started = mockMvc.perform(
+                MockMvcRequestBuilders
+                        .get("/api/item").param("stream", "true")
+                        .header(HttpHeaders.AUTHORIZATION, token)
+        ).andReturn();
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(started)).andReturn();
+
+        Assert.assertEquals(200, mvcResult.getResponse().getStatus());
+        String body = mvcResult.getResponse().getContentAsString();
+        Assert.assertTrue((int) JsonPath.read(body, "$.length()") >= 2);
+        Assert.assertEquals("Round Widget", JsonPath.read(body, "$[0].name"));
+    }
+
+    @Test
+    public void searchItems() throws Exception {
+        String token = createUserAndGetJWTToken("user_test6", "password123");
+
+        MvcResult mvcResult = mockMvc.perform(
+                MockMvcRequestBuilders
+                        .get("/api/item/search").param("q", "squ")
+                        .header(HttpHeaders.AUTHORIZATION, token)
+        ).andReturn();
+
+        Assert.assertEquals(200, mvcResult.getResponse().getStatus());
+        String body = mvcResult.getResponse().getContentAsString();
+        Assert.assertEquals("Square Widget", JsonPath.read(body, "$[0].name"));
+
+        MvcResult ranked = mockMvc.perform(
+                MockMvcRequestBuilders
+                        .get("/api/item/search").param("q", "widget").param("limit", "1")
+                        .header(HttpHeaders.AUTHORIZATION, token)
+        ).andReturn();
+
+        Assert.assertEquals(1, (int) JsonPath.read(ranked.getResponse().getContentAsString(), "$.length()"));
+
+        MvcResult noMatch = mockMvc.perform(
+                MockMvcRequestBuilders
+                        .get("/api/item/search").param("q", "round square")
+                        .header(HttpHeaders.AUTHORIZATION, token)
+        ).andReturn();
+
+        Assert.assertEquals(0, (int) JsonPath.read(noMatch.getResponse().getContentAsString(), "$.length()"));
+    }
+
+    @Test
+    public void getItemsWithEtag() throws Exception {
+        String token = createUserAndGetJWTToken("user_test7", "password123");
+
+        MvcResult mvcResult = mockMvc.perform(
+                MockMvcRequestBuilders
+                        .get("/api/item/2")
+                        .header(HttpHeaders.AUTHORIZATION, token)
+        ).andReturn();
+
+        Assert.assertEquals(200, mvcResult.getResponse().getStatus());
+        Assert.assertEquals("Square Widget", JsonPath.read(mvcResult.getResponse().getContentAsString(), "$.name"));
+        String etag = mvcResult.getResponse().getHeader(HttpHeaders.ETAG);
+        Assert.assertNotNull(etag);
+
+        MvcResult notModified = mockMvc.perform(
+                MockMvcRequestBuilders
+                        .get("/api/item/2")
+                        .header(HttpHeaders.IF_NONE_MATCH, etag)
+                        .header(HttpHeaders.AUTHORIZATION, token)
+        ).andReturn();
+
+        Assert.assertEquals(304, notModified.getResponse().getStatus());
+        Assert.assertEquals(0, notModified.getResponse().getContentLength());
+
+        MvcResult list = mockMvc.perform(
+                MockMvcRequestBuilders
+                        .get("/api/item")
+                        .header(HttpHeaders.AUTHORIZATION, token)
+        ).andReturn();
+        String listEtag = list.getResponse().getHeader(HttpHeaders.ETAG);
+        Assert.assertEquals("Round Widget", JsonPath.read(list.getResponse().getContentAsString(), "$[0].name"));
+
+        Item item = itemRepository.findById(2L).get();
+        String description = item.getDescription();
+        item.setDescription("A widget that is very square");
+        itemRepository.save(item);
+        try {
+            MvcResult changed = mockMvc.perform(
+                    MockMvcRequestBuilders
+                            .get("/api/item")
+                            .header(HttpHeaders.IF_NONE_MATCH, listEtag)
+                            .header(HttpHeaders.AUTHORIZATION, token)
+            ).andReturn();
+
+            Assert.assertEquals(200, changed.getResponse().getStatus());
+            Assert.assertNotEquals(listEtag, changed.getResponse().getHeader(HttpHeaders.ETAG));
+            Assert.assertEquals("A widget that is very square",
+                    JsonPath.read(changed.getResponse().getContentAsString(), "$[1].description"));
+        } finally {
+            item.setDescription(description);
+            itemRepository.save(item);
+        }
+    }
+
+    @Test
+    public void queryItemsByPrice() throws Exception {
+        String token = createUserAndGetJWTToken("user_test8", "password123");
+
+        MvcResult cheapest = mockMvc.perform(
+                MockMvcRequestBuilders
+                        .get("/api/item").param("sort", "price").param("limit", "1")
+                        .header(HttpHeaders.AUTHORIZATION, token)
+        ).andReturn();
+
+        Assert.assertEquals(200, cheapest.getResponse().getStatus());
+        Assert.assertEquals(1, (int) JsonPath.read(cheapest.getResponse().getContentAsString(), "$.length()"));
+        Assert.assertEquals("Square Widget", JsonPath.read(cheapest.getResponse().getContentAsString(), "$[0].name"));
+
+        MvcResult range = mockMvc.perform(
+                MockMvcRequestBuilders
+                        .get("/api/item").param("minPrice", "2.50").param("maxPrice", "3.00")
+                        .header(HttpHeaders.AUTHORIZATION, token)
+        ).andReturn();
+
+        String body = range.getResponse().getContentAsString();
+        Assert.assertTrue((int) JsonPath.read(body, "$.length()") >= 1);
+        List<Double> prices = JsonPath.read(body, "$[*].price");
+        for (double price : prices) {
+            Assert.assertTrue(price >= 2.50 && price <= 3.00);
+        }
+
+        MvcResult byName = mockMvc.perform(
+                MockMvcRequestBuilders
+                        .get("/api/item").param("sort", "name").param("maxPrice", "2.00")
+                        .header(HttpHeaders.AUTHORIZATION, token)
+        ).andReturn();
+
+        Assert.assertEquals("Square Widget", JsonPath.read(byName.getResponse().getContentAsString(), "$[0].name"));
+
+        MvcResult badSort = mockMvc.perform(
+                MockMvcRequestBuilders
+                        .get("/api/item").param("sort", "colour")
+                        .header(HttpHeaders.AUTHORIZATION, token)
+        ).andReturn();
+
+        Assert.assertEquals(400, badSort.getResponse().getStatus());
+    }
+
+    @Test
+    public void refusesInvalidPriceRanges() throws Exception {
+        String token = createUserAndGetJWTToken("user_test9", "password123");
+        String[][] ranges = {
+                {"maxPrice", "-1"},
+                {"minPrice", "-0.01"},
+                {"minPrice", "1.001"},
+                {"maxPrice", "1E+30"},
+                {"minPrice", "1E-1000000"},
+                {"minPrice", "3.00", "maxPrice", "2.00"}
+        };
+        for (String[] range : ranges) {
+            MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get("/api/item")
+                    .header(HttpHeaders.AUTHORIZATION, token);
+            for (int i = 0; i < range.length; i += 2) {
+                request.param(range[i], range[i + 1]);
+            }
+            Assert.assertEquals(String.join(" ", range), 400,
+                    mockMvc.perform(request).andReturn().getResponse().getStatus());
+        }
+
+        MvcResult trailingZeros = mockMvc.perform(
+                MockMvcRequestBuilders
+                        .get("/api/item").param("minPrice", "1.9900").param("maxPrice", "1.99")
+                        .header(HttpHeaders.AUTHORIZATION, token)
+        ).andReturn();
+        Assert.assertEquals(200, trailingZeros.getResponse().getStatus());
+    }
+
     public String createUserAndGetJWTToken(String username, String password) throws Exception {
         CreateUserRequest createUserRequest = new CreateUserRequest();
         createUserRequest.setUsername(username);
@@ -0,0 +1,186 @@
+package com.example.demo;
+
+import com.auth0.jwt.JWT;
+import com.example.demo.model.persistence.repositories.ItemRepository;
+import com.example.demo.model.requests.CreateUserRequest;
+import com.example.demo.security.SecurityConstants;
+import com.jayway.jsonpath.JsonPath;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.json.AutoConfigureJsonTesters;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.json.JacksonTester;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import java.util.Date;
+
+import static com.auth0.jwt.algorithms.Algorithm.HMAC512;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:itemimport;DB_CLOSE_DELAY=-1",
+        "item.import.chunk-size=10000",
+        "item.import.batch-size=1000",
+        "security.admin-usernames=import_test1,import_test2,import_test4"
+})
+@AutoConfigureMockMvc
+@AutoConfigureJsonTesters
+public class ItemImportTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JacksonTester<CreateUserRequest> json;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Test
+    public void importCsvSkipsInvalidRows() throws Exception {
+        String token = createUserAndGetJWTToken("import_test1", "password123");
+        long before = itemRepository.count();
+
+        String csv = "name,price,description\n"
+                + "Triangle Widget,3.49,\"A widget with three sides, all equal\"\n"
+                + ",1.00,Missing name\n"
+                + "Hexagon Widget,abc,Bad price\n"
+                + "\"Quoted \"\"Widget\"\"\",0.99,A widget with a quoted name\n";
+
+        MvcResult mvcResult = mockMvc.perform(
+                MockMvcRequestBuilders
+                        .post("/api/item/import")
+                        .contentType("text/csv")
+                        .content(csv)
+                        .header(HttpHeaders.AUTHORIZATION, token)
+        ).andReturn();
+
+        Assert.assertEquals(200, mvcResult.getResponse().getStatus());
+        String body = mvcResult.getResponse().getContentAsString();
+        Assert.assertEquals(4, (int) JsonPath.read(body, "$.rowsRead"));
+        Assert.assertEquals(2, (int) JsonPath.read(body, "$.rowsImported"));
+        Assert.assertEquals(2, (int) JsonPath.read(body, "$.rowsRejected"));
+        Assert.assertEquals(before + 2, itemRepository.count());
+        Assert.assertEquals(1, itemRepository.findByName("Quoted \"Widget\"").size());
+
+        MvcResult search = mockMvc.perform(
+                MockMvcRequestBuilders
+                        .get("/api/item/search").param("q", "triangle")
+                        .header(HttpHeaders.AUTHORIZATION, token)
+        ).andReturn();
+
+        Assert.assertEquals("Triangle Widget", JsonPath.read(search.getResponse().getContentAsString(), "$[0].name"));
+    }
+
+    @Test
+    public void importLargeNdjsonFeed() throws Exception {
+        String token = createUserAndGetJWTToken("import_test2", "password123");
+        long before = itemRepository.count();
+
+        int rows = 50_000;
+        StringBuilder ndjson = new StringBuilder(rows * 80);
+        for (int i = 0; i < rows; i++) {
+            ndjson.append("{\"name\":\"Bulk Widget ").append(i)
+                    .append("\",\"price\":").append(i % 100).append(".25")
+                    .append(",\"description\":\"Imported widget number ").append(i).append("\"}\n");
+        }
+        ndjson.append("{not json}\n");
+
+        MvcResult mvcResult = mockMvc.perform(
+                MockMvcRequestBuilders
+                        .post("/api/item/import")
+                        .contentType("application/x-ndjson")
+                        .content(ndjson.toString())
+                        .header(HttpHeaders.AUTHORIZATION, token)
+        ).andReturn();
+
+        Assert.assertEquals(200, mvcResult.getResponse().getStatus());
+        String body = mvcResult.getResponse().getContentAsString();
+        Assert.assertEquals(rows, (int) JsonPath.read(body, "$.rowsImported"));
+        Assert.assertEquals(1, (int) JsonPath.read(body, "$.rowsRejected"));
+        Assert.assertEquals(before + rows, itemRepository.count());
+    }
+
+    @Test
+    public void importCsvRequiresTheFullHeader() throws Exception {
+        String token = createUserAndGetJWTToken("import_test4", "password123");
+        long before = itemRepository.count();
+
+        for (String header : new String[]{"name,description,price", "names,price,description",
+                "name,price,description,stock", "name,price"}) {
+            MvcResult mvcResult = mockMvc.perform(
+                    MockMvcRequestBuilders
+                            .post("/api/item/import")
+                            .contentType("text/csv")
+                            .content(header + "\nSquare Widget,1.00,Not imported\n")
+                            .header(HttpHeaders.AUTHORIZATION, token)
+            ).andReturn();
+
+            String body = mvcResult.getResponse().getContentAsString();
+            Assert.assertEquals(header, 0, (int) JsonPath.read(body, "$.rowsImported"));
+            Assert.assertEquals(header, 1, (int) JsonPath.read(body, "$.rowsRejected"));
+        }
+        Assert.assertEquals(before, itemRepository.count());
+
+        MvcResult mvcResult = mockMvc.perform(
+                MockMvcRequestBuilders
+                        .post("/api/item/import")
+                        .contentType("text/csv")
+                        .content("Name, Price ,\"Description\"\nSquare Widget,1.00,Imported\n")
+                        .header(HttpHeaders.AUTHORIZATION, token)
+        ).andReturn();
+
+        Assert.assertEquals(1, (int) JsonPath.read(mvcResult.getResponse().getContentAsString(), "$.rowsImported"));
+        Assert.assertEquals(before + 1, itemRepository.count());
+    }
+
+    @Test
+    public void importIsForbiddenToNonAdminUsers() throws Exception {
+        String token = createUserAndGetJWTToken("import_test3", "password123");
+        long before = itemRepository.count();
+
+        MvcResult upload = mockMvc.perform(
+                MockMvcRequestBuilders
+                        .post("/api/item/import")
+                        .contentType("text/csv")
+                        .content("name,price,description\nSquare Widget,1.00,Not imported\n")
+                        .header(HttpHeaders.AUTHORIZATION, token)
+        ).andReturn();
+        MvcResult file = mockMvc.perform(
+                MockMvcRequestBuilders
+                        .post("/api/item/import").param("file", "/etc/passwd")
+                        .header(HttpHeaders.AUTHORIZATION, token)
+        ).andReturn();
+
+        Assert.assertEquals(403, upload.getResponse().getStatus());
+        Assert.assertEquals(403, file.getResponse().getStatus());
+        Assert.assertEquals(before, itemRepository.count());
+    }
+
+    public String createUserAndGetJWTToken(String username, String password) throws Exception {
+        CreateUserRequest createUserRequest = new CreateUserRequest();
+        createUserRequest.setUsername(username);
+        createUserRequest.setPassword(password);
+        createUserRequest.setConfirmPassword(password);
+
+        mockMvc.perform(
+                MockMvcRequestBuilders
+                        .post("/api/user/create")
+                        .contentType(MediaType.APPLICATION_JSON_UTF8)
+                        .content(json.write(createUserRequest).getJson())
+        );
+
+        String token = JWT.create()
+                .withSubject(username)
+                .withExpiresAt(new Date(System.currentTimeMillis() + SecurityConstants.EXPIRATION_TIME))
+                .sign(HMAC512(SecurityConstants.SECRET.getBytes()));
+        return "Bearer " + token;
+    }
+}
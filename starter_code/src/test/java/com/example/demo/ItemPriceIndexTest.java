@@ -0,0 +1,152 @@
+package com.example.demo;
+
+import com.example.demo.catalog.ItemChangedEvent;
+import com.example.demo.catalog.ItemPriceIndex;
+import com.example.demo.model.money.Money;
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.repositories.ItemRepository;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.example.demo.catalog.ItemPriceIndex.Sort.NAME;
+import static com.example.demo.catalog.ItemPriceIndex.Sort.PRICE;
+
+public class ItemPriceIndexTest {
+
+    private final ItemPriceIndex index = new ItemPriceIndex();
+
+    @Before
+    public void setUp() {
+        change(3, "Cherry", "3.00", ItemChangedEvent.Type.SAVED);
+        change(1, "apple", "1.00", ItemChangedEvent.Type.SAVED);
+        change(4, "date", "4.00", ItemChangedEvent.Type.SAVED);
+        change(2, "Banana", "2.00", ItemChangedEvent.Type.SAVED);
+    }
+
+    @Test
+    public void keepsBothOrdersAcrossUpdatesInsertsAndRemovals() {
+        Assert.assertEquals(Arrays.asList(1L, 2L, 3L, 4L), index.query(null, null, PRICE, 10));
+        Assert.assertEquals(Arrays.asList(1L, 2L, 3L, 4L), index.query(null, null, NAME, 10));
+
+        change(1, "elderberry", "3.50", ItemChangedEvent.Type.SAVED);
+        Assert.assertEquals(Arrays.asList(2L, 3L, 1L, 4L), index.query(null, null, PRICE, 10));
+        Assert.assertEquals(Arrays.asList(2L, 3L, 4L, 1L), index.query(null, null, NAME, 10));
+
+        change(4, "aubergine", "0.50", ItemChangedEvent.Type.SAVED);
+        Assert.assertEquals(Arrays.asList(4L, 2L, 3L, 1L), index.query(null, null, PRICE, 10));
+        Assert.assertEquals(Arrays.asList(4L, 2L, 3L, 1L), index.query(null, null, NAME, 10));
+
+        change(5, "Banana", "2.00", ItemChangedEvent.Type.SAVED);
+        change(3, "Cherry", "3.00", ItemChangedEvent.Type.REMOVED);
+        change(3, "Cherry", "3.00", ItemChangedEvent.Type.REMOVED);
+        Assert.assertEquals(Arrays.asList(4L, 2L, 5L, 1L), index.query(null, null, PRICE, 10));
+        Assert.assertEquals(Arrays.asList(4L, 2L, 5L, 1L), index.query(null, null, NAME, 10));
+        Assert.assertEquals(Arrays.asList(2L, 5L), index.query(100L, 300L, PRICE, 10));
+        Assert.assertEquals(Arrays.asList(2L, 5L, 1L), index.query(200L, null, NAME, 10));
+    }
+
+    @Test
+    public void matchesAFullSortAcrossMergesOfPendingChanges() {
+        for (long id = 1; id <= 4; id++) {
+            change(id, "", "0.00", ItemChangedEvent.Type.REMOVED);
+        }
+        Random random = new Random(7);
+        Map<Long, Item> items = new HashMap<>();
+        Comparator<Item> byPrice = Comparator.comparing((Item item) -> item.getPrice().getMinorUnits())
+                .thenComparing(Item::getId);
+        Comparator<Item> byName = Comparator.comparing(Item::getName, String.CASE_INSENSITIVE_ORDER)
+                .thenComparing(Item::getName).thenComparing(Item::getId);
+        for (int step = 0; step < 3000; step++) {
+            long id = 1 + random.nextInt(800);
+            if (random.nextInt(5) == 0) {
+                items.remove(id);
+                change(id, "gone", "0.00", ItemChangedEvent.Type.REMOVED);
+            } else {
+                String name = (random.nextBoolean() ? "item " : "Item ") + (char) ('a' + random.nextInt(26));
+                String price = random.nextInt(50) + "." + (10 + random.nextInt(90));
+                items.put(id, item(id, name, price));
+                change(id, name, price, ItemChangedEvent.Type.SAVED);
+            }
+            if (step % 100 == 99) {
+                long low = random.nextInt(25) * 100L;
+                long high = low + random.nextInt(2500);
+                List<Item> inRange = items.values().stream()
+                        .filter(item -> item.getPrice().getMinorUnits() >= low && item.getPrice().getMinorUnits() <= high)
+                        .collect(Collectors.toList());
+                Assert.assertEquals(ids(inRange, byPrice, 40), index.query(low, high, PRICE, 40));
+                Assert.assertEquals(ids(inRange, byName, 40), index.query(low, high, NAME, 40));
+                Assert.assertEquals(ids(items.values(), byName, 40), index.query(null, null, NAME, 40));
+            }
+        }
+    }
+
+    @Test
+    public void itemChangesDoNotWaitForARebuildAndSurviveIt() throws Exception {
+        ItemRepository itemRepository = Mockito.mock(ItemRepository.class);
+        TransactionTemplate transactionTemplate = Mockito.mock(TransactionTemplate.class);
+        ReflectionTestUtils.setField(index, "itemRepository", itemRepository);
+        ReflectionTestUtils.setField(index, "transactionTemplate", transactionTemplate);
+        Mockito.when(transactionTemplate.execute(Mockito.any()))
+                .thenAnswer(invocation -> ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(null));
+        CountDownLatch streaming = new CountDownLatch(1);
+        CountDownLatch changed = new CountDownLatch(1);
+        Mockito.when(itemRepository.streamPriceColumns()).thenReturn(Stream.of(
+                new Object[]{1L, Money.parse("1.00"), "apple"},
+                new Object[]{2L, Money.parse("2.00"), "Banana"})
+                .peek(row -> {
+                    streaming.countDown();
+                    try {
+                        changed.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }));
+        CompletableFuture<Void> rebuild = CompletableFuture.runAsync(index::rebuild);
+        streaming.await();
+
+        CompletableFuture.runAsync(() -> change(5, "elderberry", "0.50", ItemChangedEvent.Type.SAVED))
+                .get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(Arrays.asList(5L, 1L, 2L, 3L, 4L), index.query(null, null, PRICE, 10));
+        changed.countDown();
+        rebuild.get(5, TimeUnit.SECONDS);
+
+        Assert.assertEquals(Arrays.asList(5L, 1L, 2L), index.query(null, null, PRICE, 10));
+        Assert.assertEquals(Arrays.asList(1L, 2L, 5L), index.query(null, null, NAME, 10));
+    }
+
+    private static List<Long> ids(Collection<Item> items, Comparator<Item> order, int limit) {
+        return items.stream().sorted(order).limit(limit)
+                .map(Item::getId).collect(Collectors.toList());
+    }
+
+    private void change(long id, String name, String price, ItemChangedEvent.Type type) {
+        index.onItemChanged(new ItemChangedEvent(item(id, name, price), type));
+    }
+
+    private static Item item(long id, String name, String price) {
+        Item item = new Item();
+        item.setId(id);
+        item.setName(name);
+        item.setPrice(Money.parse(price));
+        item.setDescription("");
+        return item;
+    }
+}
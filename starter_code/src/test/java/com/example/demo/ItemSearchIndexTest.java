@@ -0,0 +1,70 @@
+package com.example.demo;
+
+import com.example.demo.catalog.ItemChangedEvent;
+import com.example.demo.catalog.ItemSearchIndex;
+import com.example.demo.model.money.Money;
+import com.example.demo.model.persistence.Item;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class ItemSearchIndexTest {
+
+    private final ItemSearchIndex index = new ItemSearchIndex();
+
+    @Test
+    public void prefixExpandsToTheMostFrequentTerms() {
+        long id = 1;
+        for (int i = 0; i < 100; i++) {
+            index(id++, String.format("zqa%03d", i));
+        }
+        for (int i = 0; i < 5; i++) {
+            index(id++, "zqzzz gadget");
+        }
+
+        List<Long> hits = index.search("zq", 200);
+
+        Assert.assertTrue(hits.containsAll(Arrays.asList(101L, 102L, 103L, 104L, 105L)));
+        Assert.assertEquals(63 + 5, hits.size());
+        Assert.assertEquals(5, index.search("gadget zq", 10).size());
+    }
+
+    @Test
+    public void prefixExpansionsFollowFrequencyChanges() {
+        for (int i = 0; i < 66; i++) {
+            index(i + 1, String.format("zqa%03d", i));
+        }
+        List<Long> hits = index.search("zqa", 200);
+        Assert.assertEquals(64, hits.size());
+        Assert.assertFalse(hits.contains(65L));
+
+        index.onItemChanged(new ItemChangedEvent(item(1, "zqa000"), ItemChangedEvent.Type.REMOVED));
+        hits = index.search("zqa", 200);
+        Assert.assertEquals(64, hits.size());
+        Assert.assertTrue(hits.contains(65L));
+        Assert.assertFalse(hits.contains(66L));
+
+        index(67, "zqa065 spare");
+        index(2, "zqb");
+        hits = index.search("zqa", 200);
+        Assert.assertEquals(65, hits.size());
+        Assert.assertTrue(hits.containsAll(Arrays.asList(66L, 67L)));
+        Assert.assertFalse(hits.contains(2L));
+        Assert.assertEquals(Arrays.asList(2L), index.search("zqb", 10));
+    }
+
+    private void index(long id, String name) {
+        index.onItemChanged(new ItemChangedEvent(item(id, name), ItemChangedEvent.Type.SAVED));
+    }
+
+    private static Item item(long id, String name) {
+        Item item = new Item();
+        item.setId(id);
+        item.setName(name);
+        item.setPrice(Money.parse("1.00"));
+        item.setDescription("");
+        return item;
+    }
+}
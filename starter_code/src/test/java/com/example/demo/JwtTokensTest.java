@@ -0,0 +1,61 @@
+package com.example.demo;
+
+import com.auth0.jwt.JWT;
+import com.example.demo.security.JwtTokens;
+import com.example.demo.security.SecurityConstants;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.auth0.jwt.algorithms.Algorithm.HMAC512;
+
+public class JwtTokensTest {
+
+    private final AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+    private final JwtTokens jwtTokens = new JwtTokens(100, 600_000, clock::get);
+
+    @Test
+    public void verifiesIssuedTokensOnceAndCachesThem() {
+        String token = jwtTokens.issue("user_test1", 42L);
+
+        JwtTokens.VerifiedToken verified = jwtTokens.verify(token);
+        Assert.assertEquals("user_test1", verified.getUsername());
+        Assert.assertEquals(Long.valueOf(42L), verified.getUserId());
+        Assert.assertNotNull(verified.getId());
+        Assert.assertSame(verified, jwtTokens.verify(token));
+    }
+
+    @Test
+    public void acceptsTokensSignedWithTheSharedSecret() {
+        String token = JWT.create()
+                .withSubject("user_test2")
+                .withExpiresAt(new Date(System.currentTimeMillis() + SecurityConstants.EXPIRATION_TIME))
+                .sign(HMAC512(SecurityConstants.SECRET.getBytes()));
+
+        Assert.assertEquals("user_test2", jwtTokens.verify(token).getUsername());
+        Assert.assertNull(jwtTokens.verify(token).getUserId());
+    }
+
+    @Test
+    public void rejectsForgedAndMalformedTokens() {
+        String forged = JWT.create()
+                .withSubject("user_test3")
+                .withExpiresAt(new Date(System.currentTimeMillis() + SecurityConstants.EXPIRATION_TIME))
+                .sign(HMAC512("another secret".getBytes()));
+
+        Assert.assertNull(jwtTokens.verify(forged));
+        Assert.assertNull(jwtTokens.verify("not.a.token"));
+    }
+
+    @Test
+    public void refusesCachedTokensOnceExpired() {
+        String token = jwtTokens.issue("user_test4", 4L);
+        Assert.assertNotNull(jwtTokens.verify(token));
+
+        clock.addAndGet(SecurityConstants.EXPIRATION_TIME + 1000);
+
+        Assert.assertNull(jwtTokens.verify(token));
+    }
+}
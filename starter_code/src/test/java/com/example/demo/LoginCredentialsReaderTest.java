@@ -0,0 +1,122 @@
+package com.example.demo;
+
+import com.example.demo.model.persistence.User;
+import com.example.demo.security.InvalidLoginRequestException;
+import com.example.demo.security.LoginCredentials;
+import com.example.demo.security.LoginCredentialsReader;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+public class LoginCredentialsReaderTest {
+    private static final Logger logger = LoggerFactory.getLogger(LoginCredentialsReaderTest.class);
+
+    private static final String BODY = "{\"username\":\"user_test1\",\"password\":\"password123\"}";
+
+    private final LoginCredentialsReader reader = new LoginCredentialsReader(new ObjectMapper(), 256, 32);
+
+    @Test
+    public void readsUsernameAndPassword() throws Exception {
+        LoginCredentials credentials = reader.read(request("{\"password\":\"password123\",\"extra\":{\"a\":[1]},"
+                + "\"username\":\"user_test1\"}"));
+
+        Assert.assertEquals("user_test1", credentials.getUsername());
+        Assert.assertEquals("password123", credentials.getPassword());
+    }
+
+    @Test
+    public void refusesMalformedAndOversizedBodies() throws Exception {
+        String[] invalid = {
+                "",
+                "[]",
+                "{\"username\":\"user_test1\"",
+                "{\"username\":\"user_test1\",\"password\":\"password123\"} {}",
+                "{\"username\":\"user_test1\"}",
+                "{\"username\":1,\"password\":\"password123\"}",
+                "{\"username\":\"" + repeat('a', 33) + "\",\"password\":\"password123\"}",
+                "{\"username\":\"user_test1\",\"password\":\"password123\",\"padding\":\"" + repeat('a', 256) + "\"}"
+        };
+        for (String body : invalid) {
+            try {
+                reader.read(request(body));
+                Assert.fail("Accepted " + body);
+            } catch (InvalidLoginRequestException expected) {
+                // refused
+            }
+        }
+
+        MockHttpServletRequest undeclared = new MockHttpServletRequest("POST", "/login") {
+            @Override
+            public long getContentLengthLong() {
+                return -1;
+            }
+        };
+        undeclared.setContent(("{\"username\":\"user_test1\",\"padding\":\"" + repeat('a', 300) + "\"}")
+                .getBytes(StandardCharsets.UTF_8));
+        try {
+            reader.read(undeclared);
+            Assert.fail("Accepted an oversized body without Content-Length");
+        } catch (InvalidLoginRequestException expected) {
+            // refused
+        }
+    }
+
+    @Test
+    public void allocatesFarLessThanBindingTheUserEntity() throws Exception {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        int iterations = 2_000;
+        long[] streaming = new long[2];
+        long[] binding = new long[2];
+        for (int round = 0; round < 2; round++) {
+            MockHttpServletRequest[] requests = requests(iterations);
+            long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            for (MockHttpServletRequest request : requests) {
+                reader.read(request);
+            }
+            streaming[round] = (threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before) / iterations;
+
+            requests = requests(iterations);
+            before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            for (MockHttpServletRequest request : requests) {
+                new ObjectMapper().readValue(request.getInputStream(), User.class);
+            }
+            binding[round] = (threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before) / iterations;
+        }
+
+        logger.info("Login body parsing allocates {} bytes per attempt, binding a User with a new ObjectMapper {}",
+                streaming[1], binding[1]);
+        Assert.assertTrue(streaming[1] * 10 < binding[1]);
+    }
+
+    private static MockHttpServletRequest[] requests(int count) {
+        MockHttpServletRequest[] requests = new MockHttpServletRequest[count];
+        for (int i = 0; i < count; i++) {
+            requests[i] = request(BODY);
+        }
+        return requests;
+    }
+
+    private static MockHttpServletRequest request(String body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/login");
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder builder = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+}
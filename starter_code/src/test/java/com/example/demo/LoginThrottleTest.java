@@ -0,0 +1,93 @@
+package com.example.demo;
+
+import com.example.demo.security.LoginThrottle;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.example.demo.security.LoginThrottle.Endpoint.LOGIN;
+import static com.example.demo.security.LoginThrottle.Endpoint.SIGNUP;
+
+public class LoginThrottleTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final LoginThrottle loginThrottle = new LoginThrottle(meterRegistry, 3, 0.5, 5, 1, 100, clock::get);
+
+    @Test
+    public void refusesUsernameOnceItsBucketIsEmptyAndRefillsOverTime() {
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(0, loginThrottle.acquire(LOGIN, "user_test1", "10.0.0.1"));
+        }
+        Assert.assertEquals(2, loginThrottle.acquire(LOGIN, "user_test1", "10.0.0.2"));
+        Assert.assertEquals(0, loginThrottle.acquire(LOGIN, "user_test2", "10.0.0.2"));
+
+        clock.addAndGet(2_000);
+        Assert.assertEquals(0, loginThrottle.acquire(LOGIN, "user_test1", "10.0.0.3"));
+        Assert.assertTrue(loginThrottle.acquire(LOGIN, "user_test1", "10.0.0.3") > 0);
+
+        Assert.assertEquals(5, meterRegistry.get("security.login.attempts")
+                .tags("endpoint", "login", "result", "admitted").counter().count(), 0);
+        Assert.assertEquals(2, meterRegistry.get("security.login.attempts")
+                .tags("endpoint", "login", "result", "rejected").counter().count(), 0);
+    }
+
+    @Test
+    public void refusesAddressOnceItsBucketIsEmpty() {
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals(0, loginThrottle.acquire(SIGNUP, "user_test" + i, "10.0.0.4"));
+        }
+        Assert.assertEquals(1, loginThrottle.acquire(SIGNUP, "user_test5", "10.0.0.4"));
+        Assert.assertEquals(0, loginThrottle.acquire(SIGNUP, "user_test5", "10.0.0.5"));
+
+        clock.addAndGet(1_000);
+        Assert.assertEquals(0, loginThrottle.acquire(SIGNUP, "user_test6", "10.0.0.4"));
+    }
+
+    @Test
+    public void sweepDropsOnlyRefilledBuckets() {
+        for (int i = 0; i < 3; i++) {
+            loginThrottle.acquire(LOGIN, "user_test1", "10.0.0.6");
+        }
+        loginThrottle.acquire(LOGIN, "user_test2", "10.0.0.7");
+        clock.addAndGet(3_000);
+        loginThrottle.sweep();
+
+        Assert.assertEquals(1, buckets("username"), 0);
+        Assert.assertEquals(0, buckets("address"), 0);
+        Assert.assertEquals(0, loginThrottle.acquire(LOGIN, "user_test1", "10.0.0.6"));
+        Assert.assertTrue(loginThrottle.acquire(LOGIN, "user_test1", "10.0.0.6") > 0);
+    }
+
+    @Test
+    public void keepsTablesBoundedUnderDistinctKeys() {
+        for (int i = 0; i < 1_000; i++) {
+            loginThrottle.acquire(SIGNUP, "user_test" + i, "10.1." + (i / 256) + "." + (i % 256));
+        }
+
+        Assert.assertTrue(buckets("username") <= 100);
+        Assert.assertTrue(buckets("address") <= 100);
+    }
+
+    @Test
+    public void trimKeepsThrottledUsernames() {
+        LoginThrottle small = new LoginThrottle(meterRegistry, 3, 0.5, 5, 1, 10, clock::get);
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(0, small.acquire(LOGIN, "user_test1", "10.2.0." + i));
+        }
+        Assert.assertTrue(small.acquire(LOGIN, "user_test1", "10.2.0.3") > 0);
+
+        for (int i = 0; i < 50; i++) {
+            Assert.assertEquals(0, small.acquire(LOGIN, "user_test_trim" + i, "10.2.1." + i));
+        }
+
+        Assert.assertTrue(small.acquire(LOGIN, "user_test1", "10.2.0.4") > 0);
+    }
+
+    private double buckets(String key) {
+        return meterRegistry.get("security.throttle.buckets").tags("key", key).gauge().value();
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.demo;
+
+import com.example.demo.model.money.Money;
+import com.example.demo.model.persistence.Item;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+public class MoneyTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void roundsHalfEvenToCents() {
+        Assert.assertEquals(2L, Money.of(new BigDecimal("0.025")).getMinorUnits());
+        Assert.assertEquals(4L, Money.of(new BigDecimal("0.035")).getMinorUnits());
+        Assert.assertEquals(-299L, Money.of(new BigDecimal("-2.99")).getMinorUnits());
+        Assert.assertEquals(2990000L, Money.parse("2.99").times(10000).getMinorUnits());
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void overflowThrows() {
+        Money.ofMinorUnits(Long.MAX_VALUE).plus(Money.ofMinorUnits(1));
+    }
+
+    @Test
+    public void keepsDecimalJsonShape() throws Exception {
+        Item item = new Item();
+        item.setId(1L);
+        item.setName("Round Widget");
+        item.setPrice(Money.parse("2.99"));
+        item.setDescription("A widget that is round");
+
+        String json = objectMapper.writeValueAsString(item);
+        Assert.assertTrue(json, json.contains("\"price\":2.99"));
+
+        Item read = objectMapper.readValue(json, Item.class);
+        Assert.assertEquals(Money.parse("2.99"), read.getPrice());
+        Assert.assertEquals(Money.parse("1.50"), objectMapper.readValue("\"1.5\"", Money.class));
+    }
+}
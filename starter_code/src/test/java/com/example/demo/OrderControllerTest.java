@@ -1,8 +1,12 @@
 package com.example.demo;
 
 import com.auth0.jwt.JWT;
+import com.jayway.jsonpath.JsonPath;
 import com.example.demo.model.requests.CreateUserRequest;
+import com.example.demo.model.requests.ModifyCartRequest;
 import com.example.demo.security.SecurityConstants;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -16,9 +20,18 @@ import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
+import javax.persistence.EntityManagerFactory;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static com.auth0.jwt.algorithms.Algorithm.HMAC512;
 
@@ -33,6 +46,12 @@ public class OrderControllerTest {
     @Autowired
     private JacksonTester<CreateUserRequest> json;
 
+    @Autowired
+    private JacksonTester<ModifyCartRequest> cartRequestJson;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
 
     @Test
     public void submitOrder() throws Exception {
@@ -44,7 +63,18 @@ public class OrderControllerTest {
                         .header(HttpHeaders.AUTHORIZATION, token)
         ).andReturn();
 
-        Assert.assertEquals(200, mvcResult.getResponse().getStatus());
+        Assert.assertEquals(202, mvcResult.getResponse().getStatus());
+        String reference = JsonPath.read(mvcResult.getResponse().getContentAsString(), "$.reference");
+        Assert.assertEquals("/api/order/status/" + reference, mvcResult.getResponse().getHeader(HttpHeaders.LOCATION));
+        Assert.assertTrue(awaitPersisted(reference, token) > 0);
+
+        MvcResult unknown = mockMvc.perform(
+                MockMvcRequestBuilders
+                        .get("/api/order/status/" + "no-such-order")
+                        .header(HttpHeaders.AUTHORIZATION, token)
+        ).andReturn();
+
+        Assert.assertEquals(404, unknown.getResponse().getStatus());
     }
 
     @Test
@@ -86,6 +116,254 @@ public class OrderControllerTest {
         Assert.assertEquals(404, mvcResult.getResponse().getStatus());
     }
 
+    @Test
+    public void historyOrderPagesUseConstantStatements() throws Exception {
+        String token = createUserAndGetJWTToken("user_test5", "password123");
+        for (int i = 0; i < 4; i++) {
+            ModifyCartRequest modifyCartRequest = new ModifyCartRequest();
+            modifyCartRequest.setItemId(1 + i % 2);
+            modifyCartRequest.setQuantity(1);
+            modifyCartRequest.setUsername("user_test5");
+            mockMvc.perform(
+                    MockMvcRequestBuilders
+                            .post("/api/cart/addToCart")
+                            .contentType(MediaType.APPLICATION_JSON_UTF8)
+                            .content(cartRequestJson.write(modifyCartRequest).getJson())
+                            .header(HttpHeaders.AUTHORIZATION, token)
+            );
+            MvcResult submitted = mockMvc.perform(
+                    MockMvcRequestBuilders
+                            .post("/api/order/submit/" + "user_test5")
+                            .header(HttpHeaders.AUTHORIZATION, token)
+            ).andReturn();
+            awaitPersisted(JsonPath.read(submitted.getResponse().getContentAsString(), "$.reference"), token);
+        }
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        try {
+            statistics.clear();
+            MvcResult firstPage = mockMvc.perform(
+                    MockMvcRequestBuilders
+                            .get("/api/order/history/" + "user_test5").param("size", "1")
+                            .header(HttpHeaders.AUTHORIZATION, token)
+            ).andReturn();
+            long singleOrderStatements = statistics.getPrepareStatementCount();
+
+            Assert.assertEquals(200, firstPage.getResponse().getStatus());
+            String body = firstPage.getResponse().getContentAsString();
+            Assert.assertEquals(1, (int) JsonPath.read(body, "$.orders.length()"));
+            int cursor = JsonPath.read(body, "$.nextCursor");
+
+            statistics.clear();
+            MvcResult secondPage = mockMvc.perform(
+                    MockMvcRequestBuilders
+                            .get("/api/order/history/" + "user_test5")
+                            .param("before", String.valueOf(cursor)).param("size", "3")
+                            .header(HttpHeaders.AUTHORIZATION, token)
+            ).andReturn();
+
+            body = secondPage.getResponse().getContentAsString();
+            Assert.assertEquals(3, (int) JsonPath.read(body, "$.orders.length()"));
+            Assert.assertTrue((int) JsonPath.read(body, "$.orders[0].id") < cursor);
+            Assert.assertEquals(2, (int) JsonPath.read(body, "$.orders[0].items.length()"));
+            Assert.assertEquals("Round Widget", JsonPath.read(body, "$.orders[0].items[0].name"));
+            Assert.assertNull(JsonPath.read(body, "$.nextCursor"));
+            Assert.assertEquals(singleOrderStatements, statistics.getPrepareStatementCount());
+        } finally {
+            statistics.setStatisticsEnabled(false);
+        }
+
+        MvcResult summary = mockMvc.perform(
+                MockMvcRequestBuilders
+                        .get("/api/order/summary/" + "user_test5")
+                        .header(HttpHeaders.AUTHORIZATION, token)
+        ).andReturn();
+
+        String body = summary.getResponse().getContentAsString();
+        Assert.assertEquals(4, (int) JsonPath.read(body, "$.orderCount"));
+        Assert.assertEquals(0, new BigDecimal("25.90").compareTo(new BigDecimal(JsonPath.read(body, "$.totalSpent").toString())));
+        Assert.assertEquals(1, (int) JsonPath.read(body, "$.topItems[0].itemId"));
+        Assert.assertEquals(6, (int) JsonPath.read(body, "$.topItems[0].quantity"));
+
+        MvcResult unknown = mockMvc.perform(
+                MockMvcRequestBuilders
+                        .get("/api/order/summary/" + "not_found_user")
+                        .header(HttpHeaders.AUTHORIZATION, token)
+        ).andReturn();
+
+        Assert.assertEquals(404, unknown.getResponse().getStatus());
+    }
+
+    @Test
+    public void submitOrderWithIdempotencyKey() throws Exception {
+        String token = createUserAndGetJWTToken("user_test6", "password123");
+
+        String first = submitWithKey("user_test6", "checkout-1", token);
+        Assert.assertEquals(first, submitWithKey("user_test6", "checkout-1", token));
+        awaitPersisted(first, token);
+        Assert.assertEquals(first, submitWithKey("user_test6", "checkout-1", token));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> duplicates = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                duplicates.add(executor.submit(() -> submitWithKey("user_test6", "checkout-2", token)));
+            }
+            String second = duplicates.get(0).get();
+            Assert.assertNotEquals(first, second);
+            for (Future<String> duplicate : duplicates) {
+                Assert.assertEquals(second, duplicate.get());
+            }
+            awaitPersisted(second, token);
+        } finally {
+            executor.shutdown();
+        }
+
+        MvcResult history = mockMvc.perform(
+                MockMvcRequestBuilders
+                        .get("/api/order/history/" + "user_test6")
+                        .header(HttpHeaders.AUTHORIZATION, token)
+        ).andReturn();
+
+        Assert.assertEquals(2, (int) JsonPath.read(history.getResponse().getContentAsString(), "$.length()"));
+
+        MvcResult summary = mockMvc.perform(
+                MockMvcRequestBuilders
+                        .get("/api/order/summary/" + "user_test6")
+                        .header(HttpHeaders.AUTHORIZATION, token)
+        ).andReturn();
+
+        Assert.assertEquals(200, summary.getResponse().getStatus());
+        Assert.assertEquals(2, (int) JsonPath.read(summary.getResponse().getContentAsString(), "$.orderCount"));
+
+        MvcResult invalidKey = mockMvc.perform(
+                MockMvcRequestBuilders
+                        .post("/api/order/submit/" + "user_test6")
+                        .header("Idempotency-Key", String.join("", Collections.nCopies(65, "k")))
+                        .header(HttpHeaders.AUTHORIZATION, token)
+        ).andReturn();
+
+        Assert.assertEquals(400, invalidKey.getResponse().getStatus());
+    }
+
+    @Test
+    public void exportOrders() throws Exception {
+        String token = createUserAndGetJWTToken("user_export", "password123");
+        ModifyCartRequest modifyCartRequest = new ModifyCartRequest();
+        modifyCartRequest.setItemId(2);
+        modifyCartRequest.setQuantity(3);
+        modifyCartRequest.setUsername("user_export");
+        mockMvc.perform(
+                MockMvcRequestBuilders
+                        .post("/api/cart/addToCart")
+                        .contentType(MediaType.APPLICATION_JSON_UTF8)
+                        .content(cartRequestJson.write(modifyCartRequest).getJson())
+                        .header(HttpHeaders.AUTHORIZATION, token)
+        );
+        MvcResult submitted = mockMvc.perform(
+                MockMvcRequestBuilders
+                        .post("/api/order/submit/" + "user_export")
+                        .header(HttpHeaders.AUTHORIZATION, token)
+        ).andReturn();
+        long orderId = awaitPersisted(JsonPath.read(submitted.getResponse().getContentAsString(), "$.reference"), token);
+
+        String[] csv = export(token, "username", "user_export", "format", "csv").split("\n");
+        Assert.assertEquals(2, csv.length);
+        Assert.assertTrue(csv[0].startsWith("order_id,reference,username"));
+        Assert.assertTrue(csv[1].startsWith(orderId + ","));
+        Assert.assertTrue(csv[1].contains(",user_export,"));
+        Assert.assertTrue(csv[1].endsWith(",5.97,2,Square Widget,3,1.99"));
+
+        String[] ndjson = export(token, "from", "2000-01-01T00:00:00Z", "to", "2100-01-01T00:00:00Z").split("\n");
+        String line = ndjson[ndjson.length - 1];
+        Assert.assertEquals(orderId, ((Number) JsonPath.read(line, "$.id")).longValue());
+        Assert.assertEquals("user_export", JsonPath.read(line, "$.username"));
+        Assert.assertEquals(3, (int) JsonPath.read(line, "$.items[0].quantity"));
+
+        MvcResult invalid = mockMvc.perform(
+                MockMvcRequestBuilders
+                        .get("/api/order/export").param("from", "2000-01-01T00:00:00Z")
+                        .header(HttpHeaders.AUTHORIZATION, token)
+        ).andReturn();
+        Assert.assertEquals(400, invalid.getResponse().getStatus());
+    }
+
+    @Test
+    public void exportIsLimitedToTheCallersOwnOrders() throws Exception {
+        String ownerToken = createUserAndGetJWTToken("user_export_a", "password123");
+        String otherToken = createUserAndGetJWTToken("user_export_b", "password123");
+        ModifyCartRequest modifyCartRequest = new ModifyCartRequest();
+        modifyCartRequest.setItemId(1);
+        modifyCartRequest.setQuantity(1);
+        modifyCartRequest.setUsername("user_export_a");
+        mockMvc.perform(
+                MockMvcRequestBuilders
+                        .post("/api/cart/addToCart")
+                        .contentType(MediaType.APPLICATION_JSON_UTF8)
+                        .content(cartRequestJson.write(modifyCartRequest).getJson())
+                        .header(HttpHeaders.AUTHORIZATION, ownerToken)
+        );
+        MvcResult submitted = mockMvc.perform(
+                MockMvcRequestBuilders
+                        .post("/api/order/submit/" + "user_export_a")
+                        .header(HttpHeaders.AUTHORIZATION, ownerToken)
+        ).andReturn();
+        awaitPersisted(JsonPath.read(submitted.getResponse().getContentAsString(), "$.reference"), ownerToken);
+
+        Assert.assertTrue(export(ownerToken, "from", "2000-01-01T00:00:00Z", "to", "2100-01-01T00:00:00Z")
+                .contains("\"username\":\"user_export_a\""));
+        Assert.assertEquals("", export(otherToken, "from", "2000-01-01T00:00:00Z", "to", "2100-01-01T00:00:00Z"));
+
+        MvcResult forbidden = mockMvc.perform(
+                MockMvcRequestBuilders
+                        .get("/api/order/export").param("username", "user_export_a")
+                        .header(HttpHeaders.AUTHORIZATION, otherToken)
+        ).andReturn();
+        Assert.assertEquals(403, forbidden.getResponse().getStatus());
+    }
+
+    private String export(String token, String... params) throws Exception {
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get("/api/order/export")
+                .header(HttpHeaders.AUTHORIZATION, token);
+        for (int i = 0; i < params.length; i += 2) {
+            request.param(params[i], params[i + 1]);
+        }
+        MvcResult started = mockMvc.perform(request).andReturn();
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(started)).andReturn();
+        Assert.assertEquals(200, mvcResult.getResponse().getStatus());
+        return mvcResult.getResponse().getContentAsString();
+    }
+
+    private String submitWithKey(String username, String idempotencyKey, String token) throws Exception {
+        MvcResult mvcResult = mockMvc.perform(
+                MockMvcRequestBuilders
+                        .post("/api/order/submit/" + username)
+                        .header("Idempotency-Key", idempotencyKey)
+                        .header(HttpHeaders.AUTHORIZATION, token)
+        ).andReturn();
+
+        Assert.assertEquals(202, mvcResult.getResponse().getStatus());
+        return JsonPath.read(mvcResult.getResponse().getContentAsString(), "$.reference");
+    }
+
+    private long awaitPersisted(String reference, String token) throws Exception {
+        for (int attempt = 0; attempt < 100; attempt++) {
+            MvcResult status = mockMvc.perform(
+                    MockMvcRequestBuilders
+                            .get("/api/order/status/" + reference)
+                            .header(HttpHeaders.AUTHORIZATION, token)
+            ).andReturn();
+            String body = status.getResponse().getContentAsString();
+            if ("PERSISTED".equals(JsonPath.read(body, "$.status"))) {
+                return ((Number) JsonPath.read(body, "$.orderId")).longValue();
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError("Order " + reference + " was not persisted");
+    }
+
     public String createUserAndGetJWTToken(String username, String password) throws Exception {
         CreateUserRequest createUserRequest = new CreateUserRequest();
         createUserRequest.setUsername(username);
@@ -0,0 +1,127 @@
+package com.example.demo;
+
+import com.example.demo.cache.BoundedCache;
+import com.example.demo.catalog.ItemCache;
+import com.example.demo.model.money.Money;
+import com.example.demo.model.persistence.Cart;
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.OrderItem;
+import com.example.demo.model.persistence.User;
+import com.example.demo.model.persistence.repositories.OrderRepository;
+import com.example.demo.model.responses.OrderReceipt;
+import com.example.demo.order.OrderIntake;
+import com.example.demo.order.OrderIntakeFullException;
+import com.example.demo.order.OrderJournal;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.Semaphore;
+
+public class OrderIntakeTest {
+
+    private final ItemCache itemCache = Mockito.mock(ItemCache.class);
+    private final OrderJournal journal = Mockito.mock(OrderJournal.class);
+    private final Semaphore capacity = new Semaphore(1);
+    private final OrderIntake orderIntake = new OrderIntake();
+    private final Item item = new Item();
+    private final User user = new User();
+    private final Cart cart = new Cart();
+
+    @Before
+    public void setUp() {
+        ReflectionTestUtils.setField(orderIntake, "itemCache", itemCache);
+        ReflectionTestUtils.setField(orderIntake, "journal", journal);
+        ReflectionTestUtils.setField(orderIntake, "capacity", capacity);
+        ReflectionTestUtils.setField(orderIntake, "retryAfterSeconds", 1L);
+        item.setId(1L);
+        item.setName("Round Widget");
+        item.setPrice(Money.parse("2.99"));
+        user.setId(7L);
+        cart.setItems(new ArrayList<>());
+        cart.addItem(item, 2);
+    }
+
+    @Test
+    public void releasesCapacityWhenTheOrderCannotBeBuilt() {
+        Mockito.when(itemCache.findAllById(Mockito.anyCollection()))
+                .thenThrow(new DataAccessResourceFailureException("database down"));
+        try {
+            orderIntake.accept(user, cart);
+            Assert.fail("Accepted an order without its item names");
+        } catch (DataAccessResourceFailureException expected) {
+            // refused
+        }
+        Assert.assertEquals(1, capacity.availablePermits());
+    }
+
+    @Test
+    public void releasesCapacityWhenTheOrderCannotBeJournaled() throws Exception {
+        Mockito.when(itemCache.findAllById(Mockito.anyCollection())).thenReturn(Collections.singletonList(item));
+        Mockito.doThrow(new IOException("disk full")).when(journal).accepted(Mockito.any(OrderJournal.Record.class));
+        try {
+            orderIntake.accept(user, cart);
+            Assert.fail("Accepted an order that was not journaled");
+        } catch (UncheckedIOException expected) {
+            // refused
+        }
+        Assert.assertEquals(1, capacity.availablePermits());
+
+        Mockito.reset(journal);
+        Assert.assertNotNull(orderIntake.accept(user, cart).getReference());
+        Assert.assertEquals(0, capacity.availablePermits());
+        try {
+            orderIntake.accept(user, cart);
+            Assert.fail("Accepted an order beyond the intake capacity");
+        } catch (OrderIntakeFullException expected) {
+            // refused
+        }
+    }
+
+    @Test
+    public void repeatedKeyWhileInFlightGetsTheFirstReceipt() throws Exception {
+        Mockito.when(itemCache.findAllById(Mockito.anyCollection())).thenReturn(Collections.singletonList(item));
+        capacity.release(2);
+        User other = new User();
+        other.setId(8L);
+
+        OrderReceipt first = orderIntake.accept(user, cart, "key-1");
+        OrderReceipt repeated = orderIntake.accept(user, cart, "key-1");
+        OrderReceipt otherUser = orderIntake.accept(other, cart, "key-1");
+
+        Assert.assertEquals(first.getReference(), repeated.getReference());
+        Assert.assertNotEquals(first.getReference(), otherUser.getReference());
+        Mockito.verify(journal, Mockito.times(2)).accepted(Mockito.any(OrderJournal.Record.class));
+        Assert.assertEquals(1, capacity.availablePermits());
+    }
+
+    @Test
+    public void repeatedKeyRefusedByTheDatabaseIsAnsweredWithTheEarlierOrder() {
+        OrderRepository orderRepository = Mockito.mock(OrderRepository.class);
+        TransactionTemplate transactionTemplate = Mockito.mock(TransactionTemplate.class);
+        ReflectionTestUtils.setField(orderIntake, "orderRepository", orderRepository);
+        ReflectionTestUtils.setField(orderIntake, "transactionTemplate", transactionTemplate);
+        ReflectionTestUtils.setField(orderIntake, "finished", new BoundedCache<>("test", 10, 0));
+        Mockito.when(transactionTemplate.execute(Mockito.any()))
+                .thenThrow(new DataIntegrityViolationException("uk_user_order_idempotency_key"));
+        Mockito.when(orderRepository.findIdByUserIdAndIdempotencyKey(7L, "key-2")).thenReturn(42L);
+        OrderJournal.Record record = OrderJournal.Record.accepted("order-1", "key-2", 7L, Instant.now(),
+                Money.parse("5.98"), Collections.singletonList(new OrderItem(1L, "Round Widget", 2, Money.parse("2.99"))));
+
+        ReflectionTestUtils.invokeMethod(orderIntake, "persist", Collections.singletonList(record));
+
+        OrderReceipt receipt = orderIntake.status("order-1");
+        Assert.assertEquals(OrderReceipt.Status.PERSISTED, receipt.getStatus());
+        Assert.assertEquals(Long.valueOf(42), receipt.getOrderId());
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.demo;
+
+import com.example.demo.model.money.Money;
+import com.example.demo.model.persistence.OrderItem;
+import com.example.demo.order.OrderJournal;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class OrderJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @Test
+    public void recoversOnlyPendingOrdersOfAbandonedSegments() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        OrderJournal.Record first = accepted("order-1");
+        OrderJournal.Record second = accepted("order-2");
+
+        OrderJournal crashed = new OrderJournal(directory, objectMapper, true, 1 << 20);
+        crashed.accepted(first);
+        crashed.accepted(second);
+        crashed.completed(first.persisted(1L));
+        crashed.close();
+
+        OrderJournal restarted = new OrderJournal(directory, objectMapper, true, 1 << 20);
+        List<OrderJournal.Record> recovered = restarted.recover();
+
+        Assert.assertEquals(1, recovered.size());
+        OrderJournal.Record order = recovered.get(0);
+        Assert.assertEquals("order-2", order.getReference());
+        Assert.assertEquals(Long.valueOf(7), order.getUserId());
+        Assert.assertEquals(Money.parse("5.98"), order.getTotal());
+        Assert.assertEquals(2, order.getItems().get(0).getQuantity());
+        Assert.assertEquals("Round Widget", order.getItems().get(0).getName());
+        Assert.assertEquals(1, segmentCount(directory));
+
+        restarted.completed(order.persisted(2L));
+        restarted.close();
+        Assert.assertEquals(0, segmentCount(directory));
+    }
+
+    @Test
+    public void skipsSegmentsOwnedByALiveJournal() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        OrderJournal live = new OrderJournal(directory, objectMapper, false, 1 << 20);
+        live.accepted(accepted("order-3"));
+
+        OrderJournal other = new OrderJournal(directory, objectMapper, false, 1 << 20);
+        Assert.assertTrue(other.recover().isEmpty());
+        Assert.assertEquals(2, segmentCount(directory));
+
+        other.close();
+        live.close();
+        Assert.assertEquals(1, segmentCount(directory));
+    }
+
+    @Test
+    public void doesNotRecoverRejectedOrders() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        OrderJournal.Record rejected = accepted("order-4");
+        Files.write(directory.resolve("orders-1-abandoned.ndjson"), Arrays.asList(
+                objectMapper.writeValueAsString(rejected),
+                objectMapper.writeValueAsString(rejected.rejected()),
+                objectMapper.writeValueAsString(accepted("order-5"))));
+
+        OrderJournal restarted = new OrderJournal(directory, objectMapper, true, 1 << 20);
+        List<OrderJournal.Record> recovered = restarted.recover();
+
+        Assert.assertEquals(1, recovered.size());
+        Assert.assertEquals("order-5", recovered.get(0).getReference());
+        restarted.close();
+    }
+
+    private static OrderJournal.Record accepted(String reference) {
+        return OrderJournal.Record.accepted(reference, null, 7L, Instant.now(), Money.parse("5.98"),
+                Collections.singletonList(new OrderItem(1L, "Round Widget", 2, Money.parse("2.99"))));
+    }
+
+    private static long segmentCount(Path directory) throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}
@@ -1,8 +1,13 @@
 package com.example.demo;
 
 import com.auth0.jwt.JWT;
+import com.example.demo.model.persistence.repositories.UserRepository;
 import com.example.demo.model.requests.CreateUserRequest;
+import com.example.demo.security.BoundedBCryptPasswordEncoder;
 import com.example.demo.security.SecurityConstants;
+import com.example.demo.security.UserDetailsServiceImpl;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -13,11 +18,13 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.json.JacksonTester;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
+import javax.persistence.EntityManagerFactory;
 import java.util.Date;
 
 import static com.auth0.jwt.algorithms.Algorithm.HMAC512;
@@ -33,6 +40,18 @@ public class UserControllerTest {
     @Autowired
     private JacksonTester<CreateUserRequest> json;
 
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserDetailsServiceImpl userDetailsService;
+
+    @Autowired
+    private BoundedBCryptPasswordEncoder passwordEncoder;
+
     @Test
     public void createValidUser() throws Exception {
         CreateUserRequest createUserRequest = new CreateUserRequest();
@@ -170,6 +189,134 @@ public class UserControllerTest {
         Assert.assertEquals(404, mvcResultNotFoundUser.getResponse().getStatus());
     }
 
+    @Test
+    public void loginUsesCachedCredentials() throws Exception {
+        CreateUserRequest createUserRequest = new CreateUserRequest();
+        createUserRequest.setUsername("admin_test7");
+        createUserRequest.setPassword("admin123");
+        createUserRequest.setConfirmPassword("admin123");
+
+        MvcResult createResult = mockMvc.perform(
+                MockMvcRequestBuilders
+                        .post("/api/user/create")
+                        .contentType(MediaType.APPLICATION_JSON_UTF8)
+                        .content(json.write(createUserRequest).getJson())
+        ).andReturn();
+
+        Assert.assertEquals(200, createResult.getResponse().getStatus());
+        Assert.assertEquals(200, login("admin_test7", "admin123").getResponse().getStatus());
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        try {
+            statistics.clear();
+            MvcResult mvcResult = login("admin_test7", "admin123");
+
+            Assert.assertEquals(200, mvcResult.getResponse().getStatus());
+            Assert.assertNotNull(mvcResult.getResponse().getHeader(HttpHeaders.AUTHORIZATION));
+            Assert.assertEquals(0, statistics.getPrepareStatementCount());
+        } finally {
+            statistics.setStatisticsEnabled(false);
+        }
+
+        Assert.assertEquals(401, login("admin_test7", "wrong-password").getResponse().getStatus());
+    }
+
+    @Test
+    public void loginUpgradesPasswordHash() throws Exception {
+        CreateUserRequest createUserRequest = new CreateUserRequest();
+        createUserRequest.setUsername("admin_test8");
+        createUserRequest.setPassword("admin123");
+        createUserRequest.setConfirmPassword("admin123");
+
+        mockMvc.perform(
+                MockMvcRequestBuilders
+                        .post("/api/user/create")
+                        .contentType(MediaType.APPLICATION_JSON_UTF8)
+                        .content(json.write(createUserRequest).getJson())
+        ).andReturn();
+        userRepository.updatePassword("admin_test8", new BCryptPasswordEncoder(4).encode("admin123"));
+        userDetailsService.evict("admin_test8");
+
+        Assert.assertEquals(200, login("admin_test8", "admin123").getResponse().getStatus());
+
+        String upgraded = userRepository.findByUsername("admin_test8").getPassword();
+        Assert.assertTrue(upgraded.startsWith(String.format("$2a$%02d$", passwordEncoder.getStrength())));
+        Assert.assertEquals(200, login("admin_test8", "admin123").getResponse().getStatus());
+    }
+
+    @Test
+    public void logoutRevokesToken() throws Exception {
+        CreateUserRequest createUserRequest = new CreateUserRequest();
+        createUserRequest.setUsername("admin_test9");
+        createUserRequest.setPassword("admin123");
+        createUserRequest.setConfirmPassword("admin123");
+
+        mockMvc.perform(
+                MockMvcRequestBuilders
+                        .post("/api/user/create")
+                        .contentType(MediaType.APPLICATION_JSON_UTF8)
+                        .content(json.write(createUserRequest).getJson())
+        ).andReturn();
+        String token = login("admin_test9", "admin123").getResponse().getHeader(HttpHeaders.AUTHORIZATION);
+        String otherToken = login("admin_test9", "admin123").getResponse().getHeader(HttpHeaders.AUTHORIZATION);
+
+        Assert.assertEquals(200, findByUsername("admin_test9", token).getResponse().getStatus());
+
+        MvcResult logout = mockMvc.perform(
+                MockMvcRequestBuilders
+                        .post("/api/user/logout").header(HttpHeaders.AUTHORIZATION, token)
+        ).andReturn();
+
+        Assert.assertEquals(204, logout.getResponse().getStatus());
+        Assert.assertEquals(401, findByUsername("admin_test9", token).getResponse().getStatus());
+        Assert.assertEquals(200, findByUsername("admin_test9", otherToken).getResponse().getStatus());
+        Assert.assertEquals(200, findByUsername("admin_test9", createJWTToken("admin_test9")).getResponse().getStatus());
+    }
+
+    @Test
+    public void loginIsThrottledPerUsername() throws Exception {
+        MvcResult result = null;
+        for (int i = 0; i <= 10; i++) {
+            result = login("admin_test10", "wrong123");
+        }
+
+        Assert.assertEquals(429, result.getResponse().getStatus());
+        Assert.assertNotNull(result.getResponse().getHeader(HttpHeaders.RETRY_AFTER));
+        Assert.assertNull(result.getResponse().getHeader(HttpHeaders.AUTHORIZATION));
+    }
+
+    @Test
+    public void loginRejectsMalformedBody() throws Exception {
+        String[] bodies = {"{\"username\":\"admin_test11\"", "{\"username\":\"admin_test11\"}", "not json"};
+        for (String body : bodies) {
+            MvcResult result = mockMvc.perform(
+                    MockMvcRequestBuilders
+                            .post("/login")
+                            .contentType(MediaType.APPLICATION_JSON_UTF8)
+                            .content(body)
+            ).andReturn();
+
+            Assert.assertEquals(400, result.getResponse().getStatus());
+        }
+    }
+
+    private MvcResult findByUsername(String username, String token) throws Exception {
+        return mockMvc.perform(
+                MockMvcRequestBuilders
+                        .get("/api/user/" + username).header(HttpHeaders.AUTHORIZATION, token)
+        ).andReturn();
+    }
+
+    private MvcResult login(String username, String password) throws Exception {
+        return mockMvc.perform(
+                MockMvcRequestBuilders
+                        .post("/login")
+                        .contentType(MediaType.APPLICATION_JSON_UTF8)
+                        .content("{\"username\":\"" + username + "\",\"password\":\"" + password + "\"}")
+        ).andReturn();
+    }
+
     public String createJWTToken(String username) {
         String token = JWT.create()
                 .withSubject(username)
@@ -0,0 +1,42 @@
+package com.example.demo;
+
+import com.example.demo.model.money.Money;
+import com.example.demo.model.persistence.OrderItem;
+import com.example.demo.model.persistence.UserOrder;
+import com.example.demo.model.persistence.UserOrderSummary;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+
+public class UserOrderSummaryTest {
+
+    @Test
+    public void tracksTotalsAndHeavyHitters() {
+        UserOrderSummary summary = new UserOrderSummary(1L);
+        summary.record(order(1L, 50, Instant.ofEpochSecond(10)));
+        for (long itemId = 2; itemId <= UserOrderSummary.TRACKED_ITEMS + 5; itemId++) {
+            summary.record(order(itemId, 1, Instant.ofEpochSecond(5)));
+        }
+        summary.record(order(1L, 10, Instant.ofEpochSecond(20)));
+
+        Assert.assertEquals(UserOrderSummary.TRACKED_ITEMS + 6, summary.getOrderCount());
+        Assert.assertEquals(Money.ofMinorUnits(100 * (60 + UserOrderSummary.TRACKED_ITEMS + 4)), summary.getTotalSpent());
+        Assert.assertEquals(Instant.ofEpochSecond(20), summary.getLastOrderAt());
+
+        List<UserOrderSummary.ItemQuantity> topItems = summary.getTopItems();
+        Assert.assertEquals(5, topItems.size());
+        Assert.assertEquals(1L, topItems.get(0).getItemId());
+        Assert.assertEquals(60L, topItems.get(0).getQuantity());
+    }
+
+    private static UserOrder order(long itemId, int quantity, Instant createdAt) {
+        UserOrder order = new UserOrder();
+        order.setItems(Collections.singletonList(new OrderItem(itemId, "Widget", quantity, Money.ofMinorUnits(100))));
+        order.setTotal(Money.ofMinorUnits(100L * quantity));
+        order.setCreatedAt(createdAt);
+        return order;
+    }
+}